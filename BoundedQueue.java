@@ -0,0 +1,262 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue for handing items between threads. Items are kept in a Queue,
+ * which is never allowed to grow past the capacity: producers wait for room
+ * instead, which pushes back on them when consumers fall behind. Waiting
+ * parks the thread through a ReentrantLock condition rather than spinning or
+ * holding a monitor, so virtual threads unmount from their carrier while they
+ * wait. Tracks the highest occupancy seen and the time spent waiting, for
+ * tuning the capacity.
+ */
+public class BoundedQueue {
+
+    // the items in the queue
+    private final Queue queue;
+
+    // the most items the queue may hold
+    private final int capacity;
+
+    // guards the queue, with conditions for waiting producers and consumers
+    private final ReentrantLock lock;
+    private final Condition notEmpty, notFull;
+
+    // the most items the queue has held at once
+    private volatile int highWaterMark;
+
+    // total time producers and consumers have spent waiting, in nanoseconds
+    private volatile long putWait, takeWait;
+
+    /**
+     * Constructor for the queue, makes an empty queue
+     * @param capacity the most items the queue may hold
+     */
+    public BoundedQueue(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        queue = new Queue();
+        lock = new ReentrantLock();
+        notEmpty = lock.newCondition();
+        notFull = lock.newCondition();
+    }
+
+    /**
+     * Adds an item to the back of the queue, waiting for room if it is full
+     * @param o the item to add, not null
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void put(Object o) throws InterruptedException {
+        check(o);
+        lock.lockInterruptibly();
+        try {
+            if (queue.length() == capacity) {
+                long begin = System.nanoTime();
+                try {
+                    while (queue.length() == capacity)
+                        notFull.await();
+                } finally {
+                    putWait += System.nanoTime() - begin;
+                }
+            }
+            enqueue(o);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds an item to the back of the queue if there is room
+     * @param o the item to add, not null
+     * @return false if the queue is full
+     */
+    public boolean offer(Object o) {
+        check(o);
+        lock.lock();
+        try {
+            if (queue.length() == capacity)
+                return false;
+            enqueue(o);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds an item to the back of the queue, waiting up to a timeout for room
+     * @param o the item to add, not null
+     * @param timeout how long to wait
+     * @param unit the unit of the timeout
+     * @return false if the queue was still full when the timeout ran out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean offer(Object o, long timeout, TimeUnit unit) throws InterruptedException {
+        check(o);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            if (queue.length() == capacity) {
+                long begin = System.nanoTime();
+                try {
+                    while (queue.length() == capacity) {
+                        if (nanos <= 0)
+                            return false;
+                        nanos = notFull.awaitNanos(nanos);
+                    }
+                } finally {
+                    putWait += System.nanoTime() - begin;
+                }
+            }
+            enqueue(o);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the front of the queue, waiting for an item if it is empty
+     * @return the front item
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Object take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (queue.length() == 0) {
+                long begin = System.nanoTime();
+                try {
+                    while (queue.length() == 0)
+                        notEmpty.await();
+                } finally {
+                    takeWait += System.nanoTime() - begin;
+                }
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the front of the queue if there is one
+     * @return the front item, or null if the queue is empty
+     */
+    public Object poll() {
+        lock.lock();
+        try {
+            return queue.length() == 0 ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the front of the queue, waiting up to a timeout for an item
+     * @param timeout how long to wait
+     * @param unit the unit of the timeout
+     * @return the front item, or null if the queue was still empty when the timeout ran out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Object poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            if (queue.length() == 0) {
+                long begin = System.nanoTime();
+                try {
+                    while (queue.length() == 0) {
+                        if (nanos <= 0)
+                            return null;
+                        nanos = notEmpty.awaitNanos(nanos);
+                    }
+                } finally {
+                    takeWait += System.nanoTime() - begin;
+                }
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of items in the queue
+     * @return the number of items in the queue
+     */
+    public int length() {
+        lock.lock();
+        try {
+            return queue.length();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The most items the queue may hold
+     * @return the capacity of the queue
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * The most items the queue has held at once
+     * @return the high water mark of the queue
+     */
+    public int highWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Total time producers have spent waiting for room
+     * @param unit the unit of the result
+     * @return the time blocked in put() and offer() with a timeout
+     */
+    public long timeBlockedPutting(TimeUnit unit) {
+        return unit.convert(putWait, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Total time consumers have spent waiting for items
+     * @param unit the unit of the result
+     * @return the time blocked in take() and poll() with a timeout
+     */
+    public long timeBlockedTaking(TimeUnit unit) {
+        return unit.convert(takeWait, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds an item while holding the lock and wakes a consumer
+     * @param o the item to add
+     */
+    private void enqueue(Object o) {
+        queue.add(o);
+        if (queue.length() > highWaterMark)
+            highWaterMark = queue.length();
+        notEmpty.signal();
+    }
+
+    /**
+     * Removes an item while holding the lock and wakes a producer
+     * @return the front item
+     */
+    private Object dequeue() {
+        Object o = queue.remove();
+        notFull.signal();
+        return o;
+    }
+
+    /**
+     * Rejects null items, since null means the queue is empty
+     * @param o the item to check
+     */
+    private static void check(Object o) {
+        if (o == null)
+            throw new NullPointerException("the queue does not hold null items");
+    }
+
+}
@@ -0,0 +1,318 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Weighted directed graph over int vertex ids that many threads can write to
+ * and read from at once. Ids come from per-graph atomic counters, appends to an
+ * adjacency list only lock the origin vertex, and readers never lock.
+ *
+ * Edge ids are handed out under the origin's lock, so they increase along
+ * every adjacency list. While a writer appends, it holds one of a few striped
+ * slots recording a lower bound on the id it is about to take. A reader reads
+ * the id counter and then the slots, and cuts at the smallest value it finds:
+ * every edge below the cut is fully written, so taking only those edges shows
+ * exactly the first edges ever added, a state the graph really was in, even
+ * across many adjacency lists. Writers never wait for each other, except on
+ * the lock of a shared origin or when more writers are appending at once than
+ * there are slots; a slow writer only holds the cut back for readers.
+ */
+public class ConcurrentGraph {
+
+    // vertices are stored in fixed size chunks so existing vertices never move
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    // chunks of adjacency lists, replaced as a whole when a chunk is added
+    private volatile AtomicReferenceArray<Adjacency>[] directory;
+
+    // a slot that no writer holds
+    private static final int FREE = Integer.MAX_VALUE;
+
+    // slots are spaced a cache line apart so writers do not share a line
+    private static final int STRIDE = 16;
+
+    // number of in-flight slots, a power of two
+    private static final int SLOTS = Math.max(16, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()) * 8);
+
+    // unique identifiers
+    private final AtomicInteger vid, eid;
+
+    // lower bound on the id each appending writer takes, or FREE
+    private final AtomicIntegerArray inFlight;
+
+    /**
+     * Constructor for the graph, makes an empty graph
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ConcurrentGraph() {
+        directory = new AtomicReferenceArray[4];
+        vid = new AtomicInteger();
+        eid = new AtomicInteger();
+        inFlight = new AtomicIntegerArray(SLOTS * STRIDE);
+        for (int i = 0; i < SLOTS; i++)
+            inFlight.set(i * STRIDE, FREE);
+    }
+
+    /**
+     * Adds a new vertex to the graph
+     * @return the id of the new vertex
+     */
+    public int addVertex() {
+        int id = vid.getAndIncrement();
+        int c = id >>> CHUNK_BITS;
+        AtomicReferenceArray<Adjacency>[] dir = directory;
+        if (c >= dir.length || dir[c] == null)
+            dir = addChunk(c);
+        dir[c].set(id & CHUNK_MASK, new Adjacency());
+        return id;
+    }
+
+    /**
+     * Adds a weighted edge between two existing vertices
+     * @param origin the id of the origin vertex
+     * @param destination the id of the destination vertex
+     * @param weight the weight of the edge
+     * @return the id of the new edge
+     * @throws NoSuchElementException if either vertex does not exist
+     */
+    public int addEdge(int origin, int destination, double weight) {
+        Adjacency adj = adjacency(origin);
+        if (adj == null || adjacency(destination) == null)
+            throw new NoSuchElementException("either the origin or the destination of this edge does not exist");
+        int slot = claim();
+        try {
+            return adj.append(destination, weight, eid);
+        } finally {
+            inFlight.set(slot, FREE);
+        }
+    }
+
+    /**
+     * Visits every out-edge of a vertex that was complete when the call began
+     * @param v the id of the vertex
+     * @param action called with the destination and weight of each edge
+     * @throws NoSuchElementException if the vertex does not exist
+     */
+    public void forEachNeighbor(int v, IntDoubleConsumer action) {
+        Adjacency adj = adjacency(v);
+        if (adj == null)
+            throw new NoSuchElementException("the vertex you are looking for DNE");
+        int w = cut();
+        int n = adj.size;
+        Block b = adj.block;
+        n = b.below(n, w);
+        for (int i = 0; i < n; i++)
+            action.accept(b.targets[i], b.weights[i]);
+    }
+
+    /**
+     * How many vertices are adjacent to a vertex, counting the same edges
+     * forEachNeighbor would visit
+     * @param v the id of the vertex
+     * @return the out-degree of the vertex
+     */
+    public int degree(int v) {
+        Adjacency adj = adjacency(v);
+        if (adj == null)
+            throw new NoSuchElementException("the vertex you are looking for DNE");
+        int w = cut();
+        int n = adj.size;
+        return adj.block.below(n, w);
+    }
+
+    /**
+     * The size of the graph
+     * @return the number of vertex ids handed out so far
+     */
+    public int size() {
+        return vid.get();
+    }
+
+    /**
+     * The number of edges in the graph
+     * @return the number of edges complete so far
+     */
+    public int edgeCount() {
+        return cut();
+    }
+
+    /**
+     * Copies the graph into an immutable compressed sparse row view while
+     * writers keep going. The view holds exactly the edges complete when the
+     * call began, and every vertex created by then
+     * @return a CSR snapshot of this graph
+     */
+    public CsrGraph toCsr() {
+        int w = cut();
+        int n = vid.get();
+        int[] sizes = new int[n];
+        Block[] blocks = new Block[n];
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            Adjacency adj = adjacency(v);
+            if (adj != null) {
+                int size = adj.size;
+                Block b = blocks[v] = adj.block;
+                sizes[v] = b.below(size, w);
+            }
+            offsets[v + 1] = offsets[v] + sizes[v];
+        }
+
+        int[] targets = new int[offsets[n]];
+        double[] weights = new double[offsets[n]];
+        for (int v = 0; v < n; v++) {
+            if (sizes[v] > 0) {
+                System.arraycopy(blocks[v].targets, 0, targets, offsets[v], sizes[v]);
+                System.arraycopy(blocks[v].weights, 0, weights, offsets[v], sizes[v]);
+            }
+        }
+        return new CsrGraph(offsets, targets, weights);
+    }
+
+    /**
+     * Takes a free in-flight slot and records a lower bound on the next edge
+     * id in it, starting from a random slot so writers spread out
+     * @return the index of the slot taken
+     */
+    private int claim() {
+        int i = ThreadLocalRandom.current().nextInt(SLOTS);
+        for (int misses = 0;; i = (i + 1) & (SLOTS - 1)) {
+            if (inFlight.compareAndSet(i * STRIDE, FREE, eid.get()))
+                return i * STRIDE;
+            if (++misses == SLOTS) {
+                Thread.onSpinWait();
+                misses = 0;
+            }
+        }
+    }
+
+    /**
+     * The id below which every edge is fully written. The id counter is read
+     * before the slots, so a writer holding a smaller id has already recorded
+     * its bound or finished
+     * @return the number of edges a reader may take
+     */
+    private int cut() {
+        int w = eid.get();
+        for (int i = 0; i < SLOTS; i++)
+            w = Math.min(w, inFlight.get(i * STRIDE));
+        return w;
+    }
+
+    /**
+     * Finds the adjacency list of a vertex
+     * @param v the id of the vertex
+     * @return the adjacency list, or null if the vertex does not exist yet
+     */
+    private Adjacency adjacency(int v) {
+        if (v < 0 || v >= vid.get())
+            return null;
+        AtomicReferenceArray<Adjacency>[] dir = directory;
+        int c = v >>> CHUNK_BITS;
+        if (c >= dir.length || dir[c] == null)
+            return null;
+        return dir[c].get(v & CHUNK_MASK);
+    }
+
+    /**
+     * Publishes a new directory that includes a chunk
+     * @param c the index of the chunk that must exist
+     * @return the directory after the change
+     */
+    private synchronized AtomicReferenceArray<Adjacency>[] addChunk(int c) {
+        AtomicReferenceArray<Adjacency>[] dir = directory;
+        if (c < dir.length && dir[c] != null)
+            return dir;
+        dir = Arrays.copyOf(dir, Math.max(dir.length, Integer.highestOneBit(c) * 2));
+        dir[c] = new AtomicReferenceArray<>(1 << CHUNK_BITS);
+        return directory = dir;
+    }
+
+    /*
+     * Edge arrays of one vertex. A block is replaced by a larger copy when it
+     * fills up, never resized in place
+     */
+    private static final class Block {
+
+        // destination, weight and id of each edge
+        private final int[] targets;
+        private final double[] weights;
+        private final int[] ids;
+
+        /**
+         * Constructor for the block
+         * @param capacity the number of edges it can hold
+         */
+        private Block(int capacity) {
+            targets = new int[capacity];
+            weights = new double[capacity];
+            ids = new int[capacity];
+        }
+
+        /**
+         * Constructor for a larger copy of a block
+         * @param old the block to copy
+         * @param capacity the number of edges it can hold
+         */
+        private Block(Block old, int capacity) {
+            targets = Arrays.copyOf(old.targets, capacity);
+            weights = Arrays.copyOf(old.weights, capacity);
+            ids = Arrays.copyOf(old.ids, capacity);
+        }
+
+        /**
+         * The number of edges with an id below a cut. Ids increase along a
+         * list, so these are a prefix of it
+         * @param n the size of the list, read before this block
+         * @param w the cut
+         * @return the length of the prefix
+         */
+        private int below(int n, int w) {
+            while (n > 0 && ids[n - 1] >= w)
+                --n;
+            return n;
+        }
+
+    }
+
+    /*
+     * Out-edges of one vertex. Writers append under the monitor of this
+     * object; readers read size first and then the block, and every edge below
+     * that size is guaranteed to be fully written
+     */
+    private static final class Adjacency {
+
+        // the current edge arrays
+        private volatile Block block = new Block(4);
+
+        // number of edges published
+        private volatile int size = 0;
+
+        /**
+         * Appends an edge, taking its id while holding the lock so that ids
+         * increase along the list
+         * @param destination the id of the destination vertex
+         * @param weight the weight of the edge
+         * @param eid the counter edge ids come from
+         * @return the id of the edge
+         */
+        private synchronized int append(int destination, double weight, AtomicInteger eid) {
+            int n = size;
+            Block b = block;
+            if (n == b.targets.length)
+                block = b = new Block(b, n * 2);
+            int id = eid.getAndIncrement();
+            b.targets[n] = destination;
+            b.weights[n] = weight;
+            b.ids[n] = id;
+            size = n + 1;
+            return id;
+        }
+
+    }
+
+}
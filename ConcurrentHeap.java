@@ -0,0 +1,217 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Priority queue for many threads, built as a MultiQueue: several Heaps, each
+ * with its own lock. An item is pushed into a random sub-heap, and pop() looks
+ * at the tops of two random sub-heaps and takes the smaller. No thread ever
+ * waits on a shared root, so throughput grows with the number of threads, at
+ * the price of items not always coming out in exact key order.
+ *
+ * How far from exact order depends on the number of sub-heaps. The item
+ * pop() returns is expected to rank within a small multiple of the number of
+ * sub-heaps among all the keys, so fewer sub-heaps per thread means tighter
+ * order but more contention, and a single sub-heap is strict. popStrict()
+ * locks every sub-heap and always takes the smallest key, for the occasional
+ * caller that needs exact order.
+ */
+public class ConcurrentHeap {
+
+    // the sub-heaps
+    private final Sub[] subs;
+
+    /**
+     * Constructor for the heap, with two sub-heaps per available processor
+     */
+    public ConcurrentHeap() {
+        this(Runtime.getRuntime().availableProcessors(), 2);
+    }
+
+    /**
+     * Constructor for the heap
+     * @param threads the number of threads expected to use the heap
+     * @param factor the number of sub-heaps per thread, which bounds how far from
+     * exact key order items may come out
+     */
+    public ConcurrentHeap(int threads, int factor) {
+        if (threads < 1 || factor < 1)
+            throw new IllegalArgumentException("threads and factor must be positive");
+        subs = new Sub[Math.multiplyExact(threads, factor)];
+        for (int i = 0; i < subs.length; i++)
+            subs[i] = new Sub();
+    }
+
+    /**
+     * Adds an item to a random sub-heap, skipping sub-heaps that are locked
+     * @param key the priority of the item, smaller comes out first
+     * @param value the item
+     * @return the heap with the item added
+     */
+    public ConcurrentHeap push(long key, Object value) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; ; attempt++) {
+            Sub sub = subs[random.nextInt(subs.length)];
+            if (attempt < subs.length ? sub.lock.tryLock() : lock(sub)) {
+                try {
+                    sub.heap.push(key, value);
+                    sub.publish();
+                } finally {
+                    sub.lock.unlock();
+                }
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Adds an item to a random sub-heap
+     * @param key the priority of the item, smaller comes out first
+     * @param value the item
+     * @return the heap with the item added
+     */
+    public ConcurrentHeap push(double key, Object value) {
+        return push(Heap.encode(key), value);
+    }
+
+    /**
+     * Removes an item with a small key: the top of whichever of two random
+     * sub-heaps has the smaller top. Falls back to trying every sub-heap once
+     * both picks are empty, so null really means the heap looked empty
+     * @return the item, or null if every sub-heap is empty
+     */
+    public Object pop() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < subs.length; attempt++) {
+            Sub a = subs[random.nextInt(subs.length)];
+            Sub b = subs[random.nextInt(subs.length)];
+            if (b.size > 0 && (a.size == 0 || b.top < a.top))
+                a = b;
+            if (a.size == 0)
+                break;
+            if (a.lock.tryLock()) {
+                try {
+                    if (!a.heap.isEmpty())
+                        return a.pop();
+                } finally {
+                    a.lock.unlock();
+                }
+            }
+        }
+        int offset = random.nextInt(subs.length);
+        for (int i = 0; i < subs.length; i++) {
+            Sub sub = subs[(offset + i) % subs.length];
+            if (sub.size == 0)
+                continue;
+            sub.lock.lock();
+            try {
+                if (!sub.heap.isEmpty())
+                    return sub.pop();
+            } finally {
+                sub.lock.unlock();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the item with the smallest key in the whole heap. Locks every
+     * sub-heap, so it is as slow as a single shared heap and blocks every
+     * other thread while it runs
+     * @return the item, or null if the heap is empty
+     */
+    public Object popStrict() {
+        for (Sub sub : subs)
+            sub.lock.lock();
+        try {
+            Sub best = null;
+            for (Sub sub : subs) {
+                if (!sub.heap.isEmpty() && (best == null || sub.heap.peekKey() < best.heap.peekKey()))
+                    best = sub;
+            }
+            return best == null ? null : best.pop();
+        } finally {
+            for (int i = subs.length - 1; i >= 0; i--)
+                subs[i].lock.unlock();
+        }
+    }
+
+    /**
+     * The number of items in the heap. Only an estimate while other threads are active
+     * @return the number of items in all sub-heaps
+     */
+    public int length() {
+        int total = 0;
+        for (Sub sub : subs)
+            total += sub.size;
+        return total;
+    }
+
+    /**
+     * Whether there are any items in the heap or not. Only an estimate while
+     * other threads are active
+     * @return true if every sub-heap looks empty
+     */
+    public boolean isEmpty() {
+        for (Sub sub : subs) {
+            if (sub.size > 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * The number of sub-heaps
+     * @return the number of sub-heaps
+     */
+    public int subHeaps() {
+        return subs.length;
+    }
+
+    /**
+     * Locks a sub-heap, waiting as long as it takes
+     * @param sub the sub-heap
+     * @return true
+     */
+    private static boolean lock(Sub sub) {
+        sub.lock.lock();
+        return true;
+    }
+
+    /*
+     * One sub-heap with its lock. The size and top key are copied out after
+     * every change, so other threads can compare sub-heaps without locking them
+     */
+    private static final class Sub {
+
+        // guards the heap
+        private final ReentrantLock lock = new ReentrantLock();
+
+        // the items of this sub-heap
+        private final Heap heap = new Heap();
+
+        // copies of the heap's length and smallest key, the key only valid if size > 0
+        private volatile int size;
+        private volatile long top;
+
+        /**
+         * Removes the top item while holding the lock
+         * @return the top item
+         */
+        private Object pop() {
+            Object o = heap.pop();
+            publish();
+            return o;
+        }
+
+        /**
+         * Copies the size and top key out while holding the lock
+         */
+        private void publish() {
+            if (!heap.isEmpty())
+                top = heap.peekKey();
+            size = heap.length();
+        }
+
+    }
+
+}
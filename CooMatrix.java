@@ -0,0 +1,72 @@
+/**
+ * Sparse matrix in coordinate format. Entry i has value values[i] at row
+ * rows[i] and column columns[i], and entries are ordered by row.
+ */
+public final class CooMatrix {
+
+    // the number of rows and columns
+    private final int size;
+
+    // the row, column and value of each entry
+    private final int[] rows, columns;
+    private final double[] values;
+
+    /**
+     * Constructor for the matrix. The arrays are taken as is and must not be
+     * modified afterwards
+     * @param size the number of rows and columns
+     * @param rows the row of each entry
+     * @param columns the column of each entry
+     * @param values the value of each entry
+     */
+    CooMatrix(int size, int[] rows, int[] columns, double[] values) {
+        this.size = size;
+        this.rows = rows;
+        this.columns = columns;
+        this.values = values;
+    }
+
+    /**
+     * The number of rows and columns of the matrix
+     * @return the side length of the matrix
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The number of stored entries
+     * @return the number of non-empty entries
+     */
+    public int entries() {
+        return values.length;
+    }
+
+    /**
+     * The row of an entry
+     * @param i the entry index
+     * @return the row, which is the origin vertex id
+     */
+    public int row(int i) {
+        return rows[i];
+    }
+
+    /**
+     * The column of an entry
+     * @param i the entry index
+     * @return the column, which is the destination vertex id
+     */
+    public int column(int i) {
+        return columns[i];
+    }
+
+    /**
+     * The value of an entry
+     * @param i the entry index
+     * @return the value, which is the edge weight
+     */
+    public double value(int i) {
+        return values[i];
+    }
+
+}
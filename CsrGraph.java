@@ -0,0 +1,99 @@
+/**
+ * Immutable compressed sparse row (CSR) view of a graph. The out-edges of
+ * vertex v occupy positions offsets[v] up to offsets[v+1] of the targets and
+ * weights arrays. Vertices are indexed by their dense id, so ids that are not
+ * in use simply have no edges.
+ */
+public final class CsrGraph implements CsrView {
+
+    // start of each row in the edge arrays, one more entry than there are vertices
+    final int[] offsets;
+
+    // destination vertex of each edge
+    final int[] targets;
+
+    // weight of each edge
+    final double[] weights;
+
+    /**
+     * Constructor for the CSR view. The arrays are taken as is and must not be
+     * modified afterwards
+     * @param offsets row start positions, of length vertexCount() + 1
+     * @param targets destination vertex of each edge
+     * @param weights weight of each edge
+     */
+    CsrGraph(int[] offsets, int[] targets, double[] weights) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * The number of vertex slots in the view
+     * @return one more than the largest vertex id in the view
+     */
+    @Override
+    public int vertexCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * The number of edges in the view
+     * @return the number of edges
+     */
+    @Override
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * How many edges leave a vertex
+     * @param v the vertex id
+     * @return the out-degree of the vertex
+     */
+    @Override
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    /**
+     * The position of the first out-edge of a vertex
+     * @param v the vertex id
+     * @return the index of the first edge of the vertex
+     */
+    @Override
+    public int begin(int v) {
+        return offsets[v];
+    }
+
+    /**
+     * The position after the last out-edge of a vertex
+     * @param v the vertex id
+     * @return one past the index of the last edge of the vertex
+     */
+    @Override
+    public int end(int v) {
+        return offsets[v + 1];
+    }
+
+    /**
+     * The destination of an edge
+     * @param edge the edge index
+     * @return the destination vertex id
+     */
+    @Override
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    /**
+     * The weight of an edge
+     * @param edge the edge index
+     * @return the weight of the edge
+     */
+    @Override
+    public double weight(int edge) {
+        return weights[edge];
+    }
+
+}
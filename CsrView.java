@@ -0,0 +1,84 @@
+/**
+ * Read access to a graph laid out in compressed sparse row order, whether the
+ * arrays live on the heap, as in CsrGraph, or in a mapped file, as in
+ * MappedGraph. The out-edges of vertex v are the edge indices from begin(v)
+ * up to end(v). The graph algorithms read edges only through this interface,
+ * so a mapped graph can be searched in place without copying it first.
+ */
+public interface CsrView {
+
+    /**
+     * The number of vertex slots in the graph
+     * @return one more than the largest vertex id
+     */
+    int vertexCount();
+
+    /**
+     * The number of edges in the graph
+     * @return the number of edges
+     */
+    int edgeCount();
+
+    /**
+     * How many edges leave a vertex
+     * @param v the vertex id
+     * @return the out-degree of the vertex
+     */
+    int degree(int v);
+
+    /**
+     * The position of the first out-edge of a vertex
+     * @param v the vertex id
+     * @return the index of the first edge of the vertex
+     */
+    int begin(int v);
+
+    /**
+     * The position after the last out-edge of a vertex
+     * @param v the vertex id
+     * @return one past the index of the last edge of the vertex
+     */
+    int end(int v);
+
+    /**
+     * The destination of an edge
+     * @param edge the edge index
+     * @return the destination vertex id
+     */
+    int target(int edge);
+
+    /**
+     * The weight of an edge
+     * @param edge the edge index
+     * @return the weight of the edge
+     */
+    double weight(int edge);
+
+    /**
+     * Builds the reverse of this graph on the heap, where every edge points the
+     * other way. Rows of the result list the in-edges of each vertex
+     * @return a CSR graph with every edge reversed
+     */
+    default CsrGraph transpose() {
+        int n = vertexCount(), m = edgeCount();
+        int[] rOffsets = new int[n + 1];
+        for (int i = 0; i < m; i++)
+            rOffsets[target(i) + 1]++;
+        for (int v = 0; v < n; v++)
+            rOffsets[v + 1] += rOffsets[v];
+
+        int[] fill = new int[n];
+        System.arraycopy(rOffsets, 0, fill, 0, n);
+        int[] rTargets = new int[m];
+        double[] rWeights = new double[m];
+        for (int v = 0; v < n; v++) {
+            for (int i = begin(v), e = end(v); i < e; i++) {
+                int j = fill[target(i)]++;
+                rTargets[j] = v;
+                rWeights[j] = weight(i);
+            }
+        }
+        return new CsrGraph(rOffsets, rTargets, rWeights);
+    }
+
+}
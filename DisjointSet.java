@@ -12,11 +12,15 @@ public class DisjointSet<T> {
     // set containing the list of all roots of sets, or the set itself if the set has only one element
     private HashMap<SetElement,SetElement> nodes;
 
+    // number of disjoint sets
+    private int sets;
+
     /**
      * Constructor for the disjoint set. Creates a new and empty set.
      */
     public DisjointSet() {
         nodes = new HashMap<>();
+        sets = 0;
     }
 
     /**
@@ -30,6 +34,7 @@ public class DisjointSet<T> {
             .map(element -> new SetElement(element))
             .collect(Collectors.toMap(Function.identity(), Function.identity()))
         );
+        sets = nodes.size();
     }
 
     /**
@@ -38,7 +43,10 @@ public class DisjointSet<T> {
      * @return true if new set is created
      */
     public boolean makeSet(T element) {
-        return nodes.putIfAbsent(new SetElement(element), new SetElement(element)) == null ? true : false;
+        if (nodes.putIfAbsent(new SetElement(element), new SetElement(element)) == null) {
+            ++sets;
+            return true;
+        } else return false;
     }
 
     /**
@@ -57,6 +65,7 @@ public class DisjointSet<T> {
             pointer = pointer.parent;
 
         SetElement represent = pointer;
+        pointer = wrap;
         while (pointer.parent != pointer) {
             wrap = pointer;
             pointer = pointer.parent;
@@ -80,7 +89,9 @@ public class DisjointSet<T> {
         SetElement setTwo = nodes.get(new SetElement(two));
         if (setOne.equals(setTwo)) {
             return one;
-        } else if (setOne.rank > setTwo.rank) {
+        }
+        --sets;
+        if (setOne.rank > setTwo.rank) {
             setTwo.setParent(setOne);
             return one;
         } else if (setTwo.rank > setOne.rank) {
@@ -93,6 +104,14 @@ public class DisjointSet<T> {
         }
     }
 
+    /**
+     * The number of disjoint sets
+     * @return how many sets the elements are split into
+     */
+    public int count() {
+        return sets;
+    }
+
     /**
      * Makes a new set with several elements already in it. If a duplicate element already exists, 
      * then that element is not added
@@ -157,6 +176,14 @@ public class DisjointSet<T> {
             return false;
         }
 
+        /**
+         * Hashes the set element by the element it wraps, consistent with equals
+         * @return the hash code of the wrapped element
+         */
+        public int hashCode() {
+            return element.hashCode();
+        }
+
     }
 
 }
@@ -0,0 +1,112 @@
+/**
+ * Queue of primitive doubles on a circular array, with the same operations as
+ * Queue but no boxing. Since a double cannot be null, peek() and remove() return
+ * a chosen empty value when there is nothing in the queue.
+ */
+public class DoubleQueue {
+    
+    // array that holds all the values
+    private double[] array;
+
+    // index of the front of the queue, and of the slot after the back
+    private int start, end;
+
+    // number of items in the queue
+    private int num;
+
+    // maximum length of queue
+    private int length;
+
+    // value returned when the queue is empty
+    private final double empty;
+
+    /**
+     * Constructor for the queue, makes an empty queue that reports emptiness with NaN
+     */
+    public DoubleQueue () {
+        this(Double.NaN);
+    }
+
+    /**
+     * Constructor for the queue, makes an empty queue
+     * @param empty the value peek() and remove() return when the queue is empty
+     */
+    public DoubleQueue (double empty) {
+        array = new double[length = 64];
+        start = 0; end = 0;
+        num = 0;
+        this.empty = empty;
+    }
+
+    /**
+     * Adds an item to the back of the queue
+     * @param d the item to add
+     * @return the queue with the item added
+     */
+    public DoubleQueue add(double d) {
+        if (num == length)
+            enlarge();
+        array[end] = d;
+        end = (end + 1) % length;
+        ++num;
+        return this;
+    }
+
+    /**
+     * Looks at the front of the queue
+     * @return the front item, or the empty value if the queue is empty
+     */
+    public double peek() {
+        if (num == 0)
+            return empty;
+        else 
+            return array[start];
+    }
+
+    /**
+     * Removes the front of the queue
+     * @return the front item, or the empty value if the queue is empty
+     */
+    public double remove() {
+        if (num == 0) {
+            return empty;
+        } else {
+            double d = array[start];
+            start = (start + 1) % length;
+            --num;
+            return d;
+        }
+    }
+
+    /**
+     * Whether there are any items in the queue or not
+     * @return true if the queue has no items
+     */
+    public boolean isEmpty() {
+        return num == 0;
+    }
+
+    /**
+     * The number of items in the queue
+     * @return the number of items in the queue
+     */
+    public int length() {
+        return num;
+    }
+
+    /**
+     * Doubles the capacity, moving the items to the front of a new array
+     * @return the queue
+     */
+    private DoubleQueue enlarge() {
+        double[] newArray = new double[length * 2];
+        int first = Math.min(num, length - start);
+        System.arraycopy(array, start, newArray, 0, first);
+        System.arraycopy(array, 0, newArray, first, num - first);
+        array = newArray;
+        length *= 2;
+        start = 0; end = num;
+        return this;
+    }
+
+}
@@ -1,7 +1,12 @@
+import java.io.IOException;
 import java.lang.invoke.WrongMethodTypeException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
+import java.nio.file.Path;
 
 /**
  * 
@@ -12,13 +17,28 @@ public abstract class Graph<V,E> {
     // the list of nodes
     private LinkedList<Vertex<V>> nodes;
 
-    // unique identifiers
-    private static int vid, eid;
+    // vertices indexed by id, null where a vertex has been deleted
+    private ArrayList<Vertex<V>> index;
+
+    // vertices indexed by their definition
+    private HashMap<V,Vertex<V>> names;
+
+    // live connectivity index over vertex ids, or null if not enabled
+    private DisjointSet<Integer> connectivity;
+
+    // whether a removal has made the connectivity index out of date
+    private boolean stale;
+
+    // unique identifiers, counted separately for every graph
+    private int vid, eid;
 
     /**
      * Constructor for a graph
      */
     public Graph() {
+        nodes = new LinkedList<>();
+        index = new ArrayList<>();
+        names = new HashMap<>();
         vid = 0; eid = 0;
     }
 
@@ -36,9 +56,12 @@ public abstract class Graph<V,E> {
      */
     public Vertex<V> addVertex() {
         Vertex<V> v = new Vertex<V>();
-        if (nodes.add(v))
+        if (nodes.add(v)) {
+            register(v);
+            if (connectivity != null)
+                connectivity.makeSet(v.id);
             return v;
-        else return null;
+        } else return null;
     }
 
     /**
@@ -46,13 +69,7 @@ public abstract class Graph<V,E> {
      * @return
      */
     public Vertex<V> getVertex(V obj) {
-        Vertex<V> v = null;
-        for (Vertex<V> node : nodes) {
-            if (node.name.equals(obj)) {
-                v = node;
-                break;
-            }
-        }
+        Vertex<V> v = names.get(obj);
         if (v != null) 
             return v;
         else throw new NoSuchElementException("the vertex you are looking for DNE");
@@ -71,11 +88,10 @@ public abstract class Graph<V,E> {
      * @return
      */
     public Vertex<V> getVertex(int id) {
-        try {
-            return nodes.get(nodes.indexOf(new Vertex<V>(id)));
-        } catch (IndexOutOfBoundsException e) {
-            throw new NoSuchElementException("the vertex you are looking for DNE");
-        }
+        Vertex<V> v = lookup(id);
+        if (v != null)
+            return v;
+        else throw new NoSuchElementException("the vertex you are looking for DNE");
     }
 
     /**
@@ -85,11 +101,10 @@ public abstract class Graph<V,E> {
      * @return
      */
     public Edge<E> addEdge(int origin, int destination) {
-        try {
-            return addEdge(nodes.get(nodes.indexOf(new Vertex<V>(origin))), nodes.get(nodes.indexOf(new Vertex<V>(destination))));
-        } catch (IndexOutOfBoundsException e) {
-            throw new NoSuchElementException("either the origin or the destination of this edge does not exist");
-        }
+        Vertex<V> o = lookup(origin), d = lookup(destination);
+        if (o != null && d != null)
+            return o.connect(d);
+        else throw new NoSuchElementException("either the origin or the destination of this edge does not exist");
     }
 
     /**
@@ -99,7 +114,7 @@ public abstract class Graph<V,E> {
      * @return
      */
     public Edge<E> addEdge(Vertex<V> origin, Vertex<V> destination) {
-        if (nodes.contains(origin) && nodes.contains(destination))
+        if (contains(origin) && contains(destination))
             return origin.connect(destination);
         else throw new NoSuchElementException("either the origin or the destination of this edge does not exist");
     }
@@ -111,15 +126,9 @@ public abstract class Graph<V,E> {
      * @return
      */
     public Edge<E> addEdge(V origin, V destination) {
-        Vertex<V> o = null, d = null;
-        for (Vertex<V> node : nodes) {
-            if (node.name.equals(origin))
-                o = node;
-            if (node.name.equals(destination))
-                d = node;
-        }
+        Vertex<V> o = names.get(origin), d = names.get(destination);
         if (o != null && d != null)
-            return addEdge(o, d);
+            return o.connect(d);
         else throw new NoSuchElementException("either the origin or the destination of this edge does not exist");
     }
 
@@ -172,13 +181,105 @@ public abstract class Graph<V,E> {
         return sum;
     }
 
+    /**
+     * Starts keeping a union-find index of which vertices are connected, ignoring
+     * edge direction. New edges are merged in as they are added, while removals
+     * only mark the index out of date so that the next query rebuilds it once
+     * for the whole batch
+     * @return this graph
+     */
+    public Graph<V,E> enableConnectivity() {
+        rebuildConnectivity();
+        return this;
+    }
+
+    /**
+     * Whether there is a path between two vertices, ignoring edge direction.
+     * Requires enableConnectivity()
+     * @param origin the id of one vertex
+     * @param destination the id of the other vertex
+     * @return true if both vertices are in the same component
+     * @throws NoSuchElementException if either vertex does not exist
+     * @throws IllegalStateException if the connectivity index is not enabled
+     */
+    public boolean connected(int origin, int destination) {
+        if (lookup(origin) == null || lookup(destination) == null)
+            throw new NoSuchElementException("either the origin or the destination does not exist");
+        DisjointSet<Integer> index = connectivity();
+        return index.find(origin).equals(index.find(destination));
+    }
+
+    /**
+     * Whether there is a path between two vertices, ignoring edge direction.
+     * Requires enableConnectivity()
+     * @param origin one vertex
+     * @param destination the other vertex
+     * @return true if both vertices are in the same component
+     * @throws NoSuchElementException if either vertex does not exist
+     * @throws IllegalStateException if the connectivity index is not enabled
+     */
+    public boolean connected(Vertex<V> origin, Vertex<V> destination) {
+        if (!contains(origin) || !contains(destination))
+            throw new NoSuchElementException("either the origin or the destination does not exist");
+        return connected(origin.id, destination.id);
+    }
+
+    /**
+     * Counts the connected components of the graph, ignoring edge direction.
+     * Requires enableConnectivity()
+     * @return the number of connected components
+     * @throws IllegalStateException if the connectivity index is not enabled
+     */
+    public int componentCount() {
+        return connectivity().count();
+    }
+
+    /**
+     * The connectivity index, rebuilt first if a removal made it out of date
+     * @return the up to date connectivity index
+     */
+    private DisjointSet<Integer> connectivity() {
+        if (connectivity == null)
+            throw new IllegalStateException("the connectivity index is not enabled, call enableConnectivity() first");
+        if (stale)
+            rebuildConnectivity();
+        return connectivity;
+    }
+
+    /**
+     * Rebuilds the connectivity index from the vertices and edges in the graph
+     */
+    private void rebuildConnectivity() {
+        DisjointSet<Integer> index = new DisjointSet<>();
+        for (Vertex<V> node : nodes)
+            index.makeSet(node.id);
+        for (Vertex<V> node : nodes) {
+            for (Edge<E> edge : node.edges) {
+                if (contains(edge.destination))
+                    index.union(node.id, edge.destination.id);
+            }
+        }
+        connectivity = index;
+        stale = false;
+    }
+
+    /**
+     * Marks the connectivity index out of date after a removal
+     */
+    private void invalidateConnectivity() {
+        if (connectivity != null)
+            stale = true;
+    }
+
     /**
      * Converts this implementation of a graph to a matrix format. If there are 
      * multiple edges from node a to node b, the matrix will throw an exception.
      * The first index indicates the origin vertex, while the second index indicates
      * the destination vertex. Null values indicate no edge is present.
+     * @deprecated boxes every entry and truncates weights, use denseMatrix(), toCoo() or rows() instead
      * @return an Integer matrix version of this graph
      */
+    @Deprecated
     public Integer[][] matrix() {
         Integer[][] matrix = new Integer[size()][size()];
 
@@ -194,6 +295,220 @@ public abstract class Graph<V,E> {
         return matrix;
     }
 
+    /**
+     * Writes this graph to a file that MappedGraph can map straight into memory.
+     * Vertex names are stored as the string form of their definitions
+     * @param path the file to write, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path path) throws IOException {
+        String[] definitions = new String[index.size()];
+        for (Vertex<V> node : nodes) {
+            if (node.name != null)
+                definitions[node.id] = node.name.toString();
+        }
+        MappedGraph.write(toCsr(), definitions, path);
+    }
+
+    /**
+     * Converts this graph to a dense row-major matrix, where the weight of the
+     * edge from vertex a to vertex b is at index a * n + b and n is one more than
+     * the largest vertex id. NaN values indicate no edge is present. Only meant
+     * for small graphs
+     * @return a primitive matrix version of this graph
+     * @throws IllegalArgumentException if a vertex has multiple edges to the same vertex
+     * @throws IllegalStateException if the matrix would not fit in an array
+     */
+    public double[] denseMatrix() {
+        int n = index.size();
+        if ((long)n * n > Integer.MAX_VALUE)
+            throw new IllegalStateException("a graph with "+n+" vertex ids is too large for a dense matrix");
+        int[] seen = new int[n];
+        for (Vertex<V> node : nodes)
+            checkRow(node, seen);
+
+        double[] matrix = new double[n * n];
+        Arrays.fill(matrix, Double.NaN);
+        for (Vertex<V> node : nodes) {
+            for (Edge<E> edge : node.edges)
+                matrix[node.id * n + edge.destination.id] = edge.weight;
+        }
+        return matrix;
+    }
+
+    /**
+     * Converts this graph to a sparse matrix in coordinate format, with one
+     * entry per edge ordered by origin vertex
+     * @return a sparse matrix version of this graph
+     * @throws IllegalArgumentException if a vertex has multiple edges to the same vertex
+     */
+    public CooMatrix toCoo() {
+        int n = index.size(), m = 0;
+        for (Vertex<V> node : nodes)
+            m += node.degree();
+
+        int[] rows = new int[m], columns = new int[m];
+        double[] values = new double[m];
+        int[] seen = new int[n];
+        int i = 0;
+        for (int id = 0; id < n; id++) {
+            Vertex<V> node = index.get(id);
+            if (node == null)
+                continue;
+            checkRow(node, seen);
+            for (Edge<E> edge : node.edges) {
+                rows[i] = id;
+                columns[i] = edge.destination.id;
+                values[i++] = edge.weight;
+            }
+        }
+        return new CooMatrix(n, rows, columns, values);
+    }
+
+    /**
+     * Streams the rows of the dense matrix form of this graph one at a time,
+     * in order of vertex id. The same array is refilled on every call to next(),
+     * so only one row is held in memory. NaN values indicate no edge is present
+     * @return an iterator over the rows of the matrix
+     * @throws IllegalArgumentException from next() if that row has multiple edges to the same vertex
+     */
+    public Iterator<double[]> rows() {
+        int n = index.size();
+        return new Iterator<double[]>() {
+
+            // the row to produce next
+            private int id = 0;
+
+            // the row being handed out, and the columns set in it
+            private final double[] row = new double[n];
+            private final int[] seen = new int[n];
+
+            @Override
+            public boolean hasNext() {
+                return id < n;
+            }
+
+            @Override
+            public double[] next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Arrays.fill(row, Double.NaN);
+                Vertex<V> node = index.get(id++);
+                if (node != null) {
+                    checkRow(node, seen);
+                    for (Edge<E> edge : node.edges)
+                        row[edge.destination.id] = edge.weight;
+                }
+                return row;
+            }
+        };
+    }
+
+    /**
+     * Makes sure a vertex has at most one edge to every other vertex. Marks are
+     * stamped with the vertex id, so the same array serves every row without
+     * being cleared
+     * @param node the origin vertex
+     * @param seen the last row each column was seen in, plus one
+     * @throws IllegalArgumentException if the vertex has multiple edges to the same vertex
+     */
+    private void checkRow(Vertex<V> node, int[] seen) {
+        for (Edge<E> edge : node.edges) {
+            int d = edge.destination.id;
+            if (seen[d] == node.id + 1)
+                throw new IllegalArgumentException("vertex "+node.id+" has multiple edges pointing to vertex "+d);
+            seen[d] = node.id + 1;
+        }
+    }
+
+    /**
+     * Finds a vertex in the registry by its id
+     * @param id the identifier of the vertex
+     * @return the vertex, or null if no vertex has that id
+     */
+    private Vertex<V> lookup(int id) {
+        return id >= 0 && id < index.size() ? index.get(id) : null;
+    }
+
+    /**
+     * Whether a vertex belongs to this graph or not
+     * @param v the vertex to look for
+     * @return true if the vertex is registered in this graph
+     */
+    private boolean contains(Vertex<V> v) {
+        return v != null && lookup(v.id) == v;
+    }
+
+    /**
+     * Adds a vertex to the id and name indices. When vertices share a
+     * definition the name stays with the oldest of them, the one a scan of the
+     * vertex list would find first
+     * @param v the vertex to register
+     */
+    @SuppressWarnings("unchecked")
+    private void register(Vertex<?> v) {
+        while (index.size() <= v.id)
+            index.add(null);
+        index.set(v.id, (Vertex<V>)v);
+        if (v.name != null) {
+            Vertex<V> first = names.get(v.name);
+            if (first == null || v.id < first.id)
+                names.put((V)v.name, (Vertex<V>)v);
+        }
+    }
+
+    /**
+     * Removes a vertex from the id and name indices. If the name belonged to
+     * it, the name passes to the oldest other vertex with the same definition
+     * @param v the vertex to unregister
+     */
+    private void unregister(Vertex<?> v) {
+        if (lookup(v.id) == v)
+            index.set(v.id, null);
+        if (v.name != null && names.get(v.name) == v) {
+            names.remove(v.name);
+            for (Vertex<V> node : nodes) {
+                if (node != v && v.name.equals(node.name)) {
+                    names.put(node.name, node);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Freezes this graph into an immutable compressed sparse row view. Rows are
+     * indexed by vertex id, and later changes to the graph are not reflected in
+     * the view.
+     * @return a CSR snapshot of this graph
+     */
+    public CsrGraph toCsr() {
+        int n = 0, m = 0;
+        for (Vertex<V> node : nodes) {
+            n = Math.max(n, node.id + 1);
+            for (Edge<E> edge : node.edges)
+                n = Math.max(n, edge.destination.id + 1);
+            m += node.degree();
+        }
+
+        int[] offsets = new int[n + 1];
+        for (Vertex<V> node : nodes)
+            offsets[node.id + 1] = node.degree();
+        for (int i = 0; i < n; i++)
+            offsets[i + 1] += offsets[i];
+
+        int[] targets = new int[m];
+        double[] weights = new double[m];
+        for (Vertex<V> node : nodes) {
+            int i = offsets[node.id];
+            for (Edge<E> edge : node.edges) {
+                targets[i] = edge.destination.id;
+                weights[i++] = edge.weight;
+            }
+        }
+        return new CsrGraph(offsets, targets, weights);
+    }
+
 
     /*
      * 
@@ -211,6 +526,7 @@ public abstract class Graph<V,E> {
          * 
          */
         private Vertex() {
+            edges = new LinkedList<>();
             name = null;
             id = vid++;
         }
@@ -220,6 +536,7 @@ public abstract class Graph<V,E> {
          * @param name
          */
         private Vertex(V name) {
+            edges = new LinkedList<>();
             this.name = name;
             id = vid++;
         }
@@ -235,7 +552,12 @@ public abstract class Graph<V,E> {
          * 
          */
         public Vertex<V> defineVertex(V obj) {
+            boolean registered = lookup(id) == this;
+            if (registered)
+                unregister(this);
             name = obj;
+            if (registered)
+                register(this);
             return this;
         }
 
@@ -244,6 +566,8 @@ public abstract class Graph<V,E> {
          * @return
          */
         public boolean delete() {
+            unregister(this);
+            invalidateConnectivity();
             return nodes.remove(this);
         }
 
@@ -312,6 +636,8 @@ public abstract class Graph<V,E> {
         public Edge<E> connect(Vertex<V> v) {
             Edge<E> e = new Edge(this, v);
             edges.add(e);
+            if (connectivity != null && !stale && lookup(id) == this && lookup(v.id) == v)
+                connectivity.union(id, v.id);
             return e;
         }
 
@@ -334,6 +660,7 @@ public abstract class Graph<V,E> {
          * @return
          */
         public boolean disconnect(Edge<E> e) {
+            invalidateConnectivity();
             return edges.remove(e);
         }
 
@@ -491,6 +818,7 @@ public abstract class Graph<V,E> {
          * @return
          */
         public boolean delete() {
+            invalidateConnectivity();
             return this.origin.edges.remove(this);
         }
 
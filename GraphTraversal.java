@@ -0,0 +1,363 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Traversal engine over a CSR graph. Breadth first search is level
+ * synchronous with the frontier kept as a bitmap, and each level is expanded
+ * either top-down from the frontier or bottom-up from the unvisited vertices,
+ * whichever touches fewer edges. Small graphs are traversed sequentially.
+ */
+public class GraphTraversal {
+
+    // graphs with fewer edges than this are traversed on the calling thread
+    private static final int SEQUENTIAL_THRESHOLD = 1 << 16;
+
+    // number of bitmap words handed to a single task
+    private static final int GRAIN = 64;
+
+    // switch to bottom-up once the frontier has more than 1/ALPHA of the unexplored edges
+    private static final int ALPHA = 14;
+
+    // switch back to top-down once the frontier has fewer than 1/BETA of the vertices
+    private static final int BETA = 24;
+
+    // the graph being traversed
+    private final CsrView graph;
+
+    // the graph with every edge reversed, built on first bottom-up step
+    private CsrGraph reverse;
+
+    // the pool that runs parallel steps
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor for the traversal engine, runs on the common pool
+     * @param graph the graph to traverse
+     */
+    public GraphTraversal(CsrView graph) {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for the traversal engine
+     * @param graph the graph to traverse
+     * @param pool the pool that runs parallel steps
+     */
+    public GraphTraversal(CsrView graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.pool = pool;
+    }
+
+    /**
+     * Breadth first search following edge direction
+     * @param source the id of the vertex to start from
+     * @return the number of edges from the source to each vertex, or -1 if unreachable
+     */
+    public int[] bfs(int source) {
+        if (source < 0 || source >= graph.vertexCount())
+            throw new IndexOutOfBoundsException("the source vertex is not in the graph");
+        if (sequential())
+            return sequentialBfs(source);
+        else return parallelBfs(source);
+    }
+
+    /**
+     * Finds the connected components of the graph, ignoring edge direction
+     * @return for each vertex, the smallest vertex id in its component
+     */
+    public int[] components() {
+        if (sequential())
+            return sequentialComponents();
+        else return parallelComponents();
+    }
+
+    /**
+     * Counts the connected components of the graph, ignoring edge direction.
+     * Unused vertex ids count as components of their own
+     * @return the number of connected components
+     */
+    public int componentCount() {
+        int[] labels = components();
+        int count = 0;
+        for (int v = 0; v < labels.length; v++) {
+            if (labels[v] == v)
+                ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Whether the graph is too small to be worth splitting across threads
+     * @return true if work should stay on the calling thread
+     */
+    private boolean sequential() {
+        return graph.edgeCount() < SEQUENTIAL_THRESHOLD || pool.getParallelism() < 2;
+    }
+
+    /**
+     * Plain queue based breadth first search
+     * @param source the id of the vertex to start from
+     * @return the level of each vertex, or -1 if unreachable
+     */
+    private int[] sequentialBfs(int source) {
+        int[] dist = new int[graph.vertexCount()];
+        Arrays.fill(dist, -1);
+        int[] queue = new int[graph.vertexCount()];
+        int head = 0, tail = 0;
+        dist[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int v = queue[head++];
+            for (int i = graph.begin(v), e = graph.end(v); i < e; i++) {
+                int u = graph.target(i);
+                if (dist[u] < 0) {
+                    dist[u] = dist[v] + 1;
+                    queue[tail++] = u;
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Direction optimizing breadth first search over frontier bitmaps
+     * @param source the id of the vertex to start from
+     * @return the level of each vertex, or -1 if unreachable
+     */
+    private int[] parallelBfs(int source) {
+        int n = graph.vertexCount(), words = (n + 63) >>> 6;
+        int[] dist = new int[n];
+        Arrays.fill(dist, -1);
+        dist[source] = 0;
+
+        long[] frontier = new long[words];
+        AtomicLongArray visited = new AtomicLongArray(words);
+        AtomicLongArray next = new AtomicLongArray(words);
+        frontier[source >>> 6] = 1L << source;
+        visited.set(source >>> 6, 1L << source);
+
+        long frontierSize = 1, frontierEdges = graph.degree(source);
+        long unexplored = graph.edgeCount() - frontierEdges;
+        boolean bottomUp = false;
+        LongAdder count = new LongAdder(), edges = new LongAdder();
+
+        for (int level = 1; frontierSize > 0; level++) {
+            if (!bottomUp && frontierEdges > unexplored / ALPHA)
+                bottomUp = true;
+            else if (bottomUp && frontierSize < n / BETA)
+                bottomUp = false;
+
+            count.reset(); edges.reset();
+            if (bottomUp)
+                pool.invoke(new RangeTask(0, words, GRAIN, bottomUpStep(frontier, visited, next, dist, level, count, edges)));
+            else
+                pool.invoke(new RangeTask(0, words, GRAIN, topDownStep(frontier, visited, next, dist, level, count, edges)));
+
+            for (int w = 0; w < words; w++) {
+                frontier[w] = next.get(w);
+                next.set(w, 0);
+            }
+            frontierSize = count.sum();
+            frontierEdges = edges.sum();
+            unexplored -= frontierEdges;
+        }
+        return dist;
+    }
+
+    /**
+     * Expands every frontier vertex along its out-edges, claiming unvisited
+     * vertices atomically
+     * @return the body of the step over a range of bitmap words
+     */
+    private RangeTask.Body topDownStep(long[] frontier, AtomicLongArray visited, AtomicLongArray next,
+            int[] dist, int level, LongAdder count, LongAdder edges) {
+        return (lo, hi) -> {
+            long found = 0, degrees = 0;
+            for (int w = lo; w < hi; w++) {
+                for (long bits = frontier[w]; bits != 0; bits &= bits - 1) {
+                    int v = (w << 6) | Long.numberOfTrailingZeros(bits);
+                    for (int i = graph.begin(v), e = graph.end(v); i < e; i++) {
+                        int u = graph.target(i);
+                        if ((visited.get(u >>> 6) & (1L << u)) == 0 && setBit(visited, u)) {
+                            dist[u] = level;
+                            setBit(next, u);
+                            ++found;
+                            degrees += graph.degree(u);
+                        }
+                    }
+                }
+            }
+            count.add(found);
+            edges.add(degrees);
+        };
+    }
+
+    /**
+     * Checks every unvisited vertex for a parent in the frontier. Each task
+     * owns whole bitmap words, so no atomic updates are needed
+     * @return the body of the step over a range of bitmap words
+     */
+    private RangeTask.Body bottomUpStep(long[] frontier, AtomicLongArray visited, AtomicLongArray next,
+            int[] dist, int level, LongAdder count, LongAdder edges) {
+        CsrGraph in = reverse();
+        int n = graph.vertexCount();
+        return (lo, hi) -> {
+            long found = 0, degrees = 0;
+            for (int w = lo; w < hi; w++) {
+                long seen = visited.get(w), added = 0;
+                for (int v = w << 6, end = Math.min(n, v + 64); v < end; v++) {
+                    if ((seen & (1L << v)) != 0)
+                        continue;
+                    for (int i = in.begin(v), e = in.end(v); i < e; i++) {
+                        int u = in.target(i);
+                        if ((frontier[u >>> 6] & (1L << u)) != 0) {
+                            dist[v] = level;
+                            added |= 1L << v;
+                            ++found;
+                            degrees += graph.degree(v);
+                            break;
+                        }
+                    }
+                }
+                if (added != 0) {
+                    visited.set(w, seen | added);
+                    next.set(w, added);
+                }
+            }
+            count.add(found);
+            edges.add(degrees);
+        };
+    }
+
+    /**
+     * Union-find over both directions of every edge on the calling thread
+     * @return the component label of each vertex
+     */
+    private int[] sequentialComponents() {
+        int n = graph.vertexCount();
+        int[] parent = new int[n];
+        for (int v = 0; v < n; v++)
+            parent[v] = v;
+        for (int v = 0; v < n; v++) {
+            for (int i = graph.begin(v), e = graph.end(v); i < e; i++) {
+                int a = root(parent, v), b = root(parent, graph.target(i));
+                if (a < b)
+                    parent[b] = a;
+                else if (b < a)
+                    parent[a] = b;
+            }
+        }
+        for (int v = 0; v < n; v++)
+            parent[v] = root(parent, v);
+        return parent;
+    }
+
+    /**
+     * Lock-free union-find where roots are only ever hooked under smaller
+     * roots, so every component ends up labelled by its smallest vertex
+     * @return the component label of each vertex
+     */
+    private int[] parallelComponents() {
+        int n = graph.vertexCount();
+        AtomicIntegerArray parent = new AtomicIntegerArray(n);
+        for (int v = 0; v < n; v++)
+            parent.set(v, v);
+
+        int words = (n + 63) >>> 6;
+        pool.invoke(new RangeTask(0, words, GRAIN, (lo, hi) -> {
+            for (int v = lo << 6, end = Math.min(n, hi << 6); v < end; v++) {
+                for (int i = graph.begin(v), e = graph.end(v); i < e; i++)
+                    union(parent, v, graph.target(i));
+            }
+        }));
+
+        int[] labels = new int[n];
+        pool.invoke(new RangeTask(0, words, GRAIN, (lo, hi) -> {
+            for (int v = lo << 6, end = Math.min(n, hi << 6); v < end; v++)
+                labels[v] = find(parent, v);
+        }));
+        return labels;
+    }
+
+    /**
+     * Builds the reversed graph the first time a bottom-up step needs it
+     * @return the graph with every edge reversed
+     */
+    private synchronized CsrGraph reverse() {
+        if (reverse == null)
+            reverse = graph.transpose();
+        return reverse;
+    }
+
+    /**
+     * Finds the root of a vertex, halving the path as it goes
+     * @param parent the parent pointers
+     * @param v the vertex
+     * @return the root of the vertex
+     */
+    private static int root(int[] parent, int v) {
+        while (parent[v] != v)
+            v = parent[v] = parent[parent[v]];
+        return v;
+    }
+
+    /**
+     * Finds the root of a vertex in a shared forest, halving the path as it goes
+     * @param parent the parent pointers
+     * @param v the vertex
+     * @return the root of the vertex
+     */
+    private static int find(AtomicIntegerArray parent, int v) {
+        while (true) {
+            int p = parent.get(v);
+            if (p == v)
+                return v;
+            int g = parent.get(p);
+            if (g != p)
+                parent.compareAndSet(v, p, g);
+            v = g;
+        }
+    }
+
+    /**
+     * Merges the sets of two vertices in a shared forest
+     * @param parent the parent pointers
+     * @param a the first vertex
+     * @param b the second vertex
+     */
+    private static void union(AtomicIntegerArray parent, int a, int b) {
+        while (true) {
+            a = find(parent, a);
+            b = find(parent, b);
+            if (a == b)
+                return;
+            if (a < b) {
+                int t = a; a = b; b = t;
+            }
+            if (parent.compareAndSet(a, a, b))
+                return;
+        }
+    }
+
+    /**
+     * Sets a bit in a shared bitmap
+     * @param bits the bitmap
+     * @param i the index of the bit
+     * @return true if this call changed the bit from 0 to 1
+     */
+    private static boolean setBit(AtomicLongArray bits, int i) {
+        int w = i >>> 6;
+        long mask = 1L << i;
+        while (true) {
+            long old = bits.get(w);
+            if ((old & mask) != 0)
+                return false;
+            if (bits.compareAndSet(w, old, old | mask))
+                return true;
+        }
+    }
+
+}
@@ -1,3 +1,612 @@
-public class Heap {
-    
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Min-heap of values ordered by primitive keys, kept in an array where the
+ * children of slot i are slots d*i+1 to d*i+d. A wider node means a shallower
+ * tree, and the d children sit next to each other in memory, so a sift down
+ * touches fewer cache lines than with a binary heap. Keys are longs held in an
+ * array parallel to the values, so nothing is boxed. Double keys are stored as
+ * longs with the same ordering, and a heap should use one kind of key
+ * throughout.
+ *
+ * In indexed mode every item gets an int handle when it is added, which can
+ * later change its key or remove it in O(log n). Two int arrays map handles to
+ * slots and back, and handles of removed items are reused.
+ */
+public class Heap implements MergeableHeap {
+
+    // keys and values of the items, the smallest key at index 0
+    private long[] keys;
+    private Object[] values;
+
+    // number of items in the heap
+    private int num;
+
+    // number of children of each node
+    private final int arity;
+
+    // in indexed mode, the handle in each slot and the slot of each handle, -1
+    // if the handle is not in the heap; both null otherwise
+    private int[] handles, pos;
+
+    // handles given back by removed items, and the next handle never given out
+    private int[] free;
+    private int freeNum, nextHandle;
+
+    /**
+     * Constructor for the heap, makes an empty 4-ary heap
+     */
+    public Heap() {
+        this(4);
+    }
+
+    /**
+     * Constructor for the heap, makes an empty heap
+     * @param arity the number of children of each node, at least 2
+     */
+    public Heap(int arity) {
+        this(arity, 64);
+    }
+
+    /**
+     * Constructor for the heap, makes an empty heap
+     * @param arity the number of children of each node, at least 2
+     * @param capacity the number of items to make room for
+     */
+    public Heap(int arity, int capacity) {
+        this(arity, capacity, false);
+    }
+
+    /**
+     * Constructor for the heap, makes an empty heap
+     * @param arity the number of children of each node, at least 2
+     * @param capacity the number of items to make room for
+     * @param indexed whether items get handles for changing their keys or removing them
+     */
+    public Heap(int arity, int capacity, boolean indexed) {
+        if (arity < 2)
+            throw new IllegalArgumentException("arity must be at least 2");
+        if (capacity < 0)
+            throw new IllegalArgumentException("capacity must not be negative");
+        this.arity = arity;
+        keys = new long[Math.max(capacity, 1)];
+        values = new Object[keys.length];
+        num = 0;
+        if (indexed) {
+            handles = new int[keys.length];
+            pos = new int[keys.length];
+            free = new int[keys.length];
+            freeNum = 0; nextHandle = 0;
+        }
+    }
+
+    /**
+     * Adds an item to the heap
+     * @param key the priority of the item, smaller comes out first
+     * @param value the item
+     * @return the heap with the item added
+     */
+    @Override
+    public Heap push(long key, Object value) {
+        if (num == keys.length)
+            enlarge(num + 1);
+        siftUp(num++, key, value, handles == null ? -1 : allocate());
+        return this;
+    }
+
+    /**
+     * Adds an item to the heap
+     * @param key the priority of the item, smaller comes out first
+     * @param value the item
+     * @return the heap with the item added
+     */
+    public Heap push(double key, Object value) {
+        return push(encode(key), value);
+    }
+
+    /**
+     * Adds an item to an indexed heap
+     * @param key the priority of the item, smaller comes out first
+     * @param value the item
+     * @return the handle of the item, valid until the item leaves the heap
+     * @throws IllegalStateException if the heap is not indexed
+     */
+    public int insert(long key, Object value) {
+        checkIndexed();
+        if (num == keys.length)
+            enlarge(num + 1);
+        int h = allocate();
+        siftUp(num++, key, value, h);
+        return h;
+    }
+
+    /**
+     * Adds an item to an indexed heap
+     * @param key the priority of the item, smaller comes out first
+     * @param value the item
+     * @return the handle of the item, valid until the item leaves the heap
+     * @throws IllegalStateException if the heap is not indexed
+     */
+    public int insert(double key, Object value) {
+        return insert(encode(key), value);
+    }
+
+    /**
+     * Whether an item is in an indexed heap or not
+     * @param handle the handle of the item
+     * @return true if the handle belongs to an item in the heap
+     */
+    public boolean contains(int handle) {
+        return handles != null && handle >= 0 && handle < nextHandle && pos[handle] >= 0;
+    }
+
+    /**
+     * The key of an item in an indexed heap
+     * @param handle the handle of the item
+     * @return the key of the item
+     * @throws IllegalArgumentException if the handle is not in the heap
+     */
+    public long key(int handle) {
+        return keys[slot(handle)];
+    }
+
+    /**
+     * Lowers the key of an item in an indexed heap, moving it towards the top
+     * @param handle the handle of the item
+     * @param key the new key, no bigger than the current one
+     * @return the heap with the key changed
+     * @throws IllegalArgumentException if the handle is not in the heap or the key is bigger
+     */
+    public Heap decreaseKey(int handle, long key) {
+        int i = slot(handle);
+        if (key > keys[i])
+            throw new IllegalArgumentException("new key is bigger than the current key");
+        siftUp(i, key, values[i], handle);
+        return this;
+    }
+
+    /**
+     * Lowers the double key of an item in an indexed heap
+     * @param handle the handle of the item
+     * @param key the new key, no bigger than the current one
+     * @return the heap with the key changed
+     * @throws IllegalArgumentException if the handle is not in the heap or the key is bigger
+     */
+    public Heap decreaseKey(int handle, double key) {
+        return decreaseKey(handle, encode(key));
+    }
+
+    /**
+     * Raises the key of an item in an indexed heap, moving it away from the top
+     * @param handle the handle of the item
+     * @param key the new key, no smaller than the current one
+     * @return the heap with the key changed
+     * @throws IllegalArgumentException if the handle is not in the heap or the key is smaller
+     */
+    public Heap increaseKey(int handle, long key) {
+        int i = slot(handle);
+        if (key < keys[i])
+            throw new IllegalArgumentException("new key is smaller than the current key");
+        siftDown(i, key, values[i], handle);
+        return this;
+    }
+
+    /**
+     * Raises the double key of an item in an indexed heap
+     * @param handle the handle of the item
+     * @param key the new key, no smaller than the current one
+     * @return the heap with the key changed
+     * @throws IllegalArgumentException if the handle is not in the heap or the key is smaller
+     */
+    public Heap increaseKey(int handle, double key) {
+        return increaseKey(handle, encode(key));
+    }
+
+    /**
+     * Changes the key of an item in an indexed heap in either direction
+     * @param handle the handle of the item
+     * @param key the new key
+     * @return the heap with the key changed
+     * @throws IllegalArgumentException if the handle is not in the heap
+     */
+    public Heap update(int handle, long key) {
+        int i = slot(handle);
+        reposition(i, key, values[i], handle);
+        return this;
+    }
+
+    /**
+     * Changes the double key of an item in an indexed heap in either direction
+     * @param handle the handle of the item
+     * @param key the new key
+     * @return the heap with the key changed
+     * @throws IllegalArgumentException if the handle is not in the heap
+     */
+    public Heap update(int handle, double key) {
+        return update(handle, encode(key));
+    }
+
+    /**
+     * Removes an item from an indexed heap wherever it is
+     * @param handle the handle of the item
+     * @return the item
+     * @throws IllegalArgumentException if the handle is not in the heap
+     */
+    public Object remove(int handle) {
+        int i = slot(handle);
+        Object value = values[i];
+        release(handle);
+        if (i != --num)
+            reposition(i, keys[num], values[num], handles[num]);
+        values[num] = null;
+        return value;
+    }
+
+    /**
+     * The handle of the item with the smallest key in an indexed heap
+     * @return the handle of the item peek() would return
+     * @throws IllegalStateException if the heap is empty or not indexed
+     */
+    public int peekHandle() {
+        checkIndexed();
+        if (num == 0)
+            throw new IllegalStateException("the heap is empty");
+        return handles[0];
+    }
+
+    /**
+     * Looks at the item with the smallest key
+     * @return the item, or null if the heap is empty
+     */
+    @Override
+    public Object peek() {
+        return num == 0 ? null : values[0];
+    }
+
+    /**
+     * The smallest key in the heap
+     * @return the key of the item peek() would return
+     * @throws IllegalStateException if the heap is empty
+     */
+    @Override
+    public long peekKey() {
+        if (num == 0)
+            throw new IllegalStateException("the heap is empty");
+        return keys[0];
+    }
+
+    /**
+     * The smallest key in a heap of double keys
+     * @return the key of the item peek() would return
+     * @throws IllegalStateException if the heap is empty
+     */
+    public double peekDoubleKey() {
+        return decode(peekKey());
+    }
+
+    /**
+     * Removes the item with the smallest key
+     * @return the item, or null if the heap is empty
+     */
+    @Override
+    public Object pop() {
+        if (num == 0)
+            return null;
+        Object top = values[0];
+        if (handles != null)
+            release(handles[0]);
+        long key = keys[--num];
+        Object value = values[num];
+        values[num] = null;
+        if (num > 0)
+            siftDown(0, key, value, handles == null ? -1 : handles[num]);
+        return top;
+    }
+
+    /**
+     * Adds an item and then removes the item with the smallest key, which is
+     * faster than push() followed by pop(). If the new key is no bigger than
+     * every key in the heap, the heap is left untouched
+     * @param key the priority of the new item
+     * @param value the new item
+     * @return the item removed, which may be the new one
+     * @throws IllegalStateException if the heap is indexed, since the new item's handle could not be returned
+     */
+    public Object pushPop(long key, Object value) {
+        if (handles != null)
+            throw new IllegalStateException("an indexed heap cannot pushPop, use insert() and pop()");
+        if (num == 0 || key <= keys[0])
+            return value;
+        Object top = values[0];
+        siftDown(0, key, value, -1);
+        return top;
+    }
+
+    /**
+     * Adds an item and then removes the item with the smallest key
+     * @param key the priority of the new item
+     * @param value the new item
+     * @return the item removed, which may be the new one
+     * @throws IllegalStateException if the heap is indexed
+     */
+    public Object pushPop(double key, Object value) {
+        return pushPop(encode(key), value);
+    }
+
+    /**
+     * Replaces the contents of the heap with a batch of items, in linear time
+     * rather than the n log n of pushing them one at a time. In indexed mode the
+     * old handles are all released and item i gets handle i
+     * @param keys the keys of the items
+     * @param values the items, in the same order as their keys
+     * @param n the number of items to take from the front of the arrays
+     * @return the heap holding just those items
+     * @throws IndexOutOfBoundsException if either array has fewer than n items
+     */
+    public Heap heapify(long[] keys, Object[] values, int n) {
+        Objects.checkFromIndexSize(0, n, Math.min(keys.length, values.length));
+        Arrays.fill(this.values, 0, num, null);
+        if (n > this.keys.length)
+            enlarge(n);
+        System.arraycopy(keys, 0, this.keys, 0, n);
+        System.arraycopy(values, 0, this.values, 0, n);
+        num = n;
+        if (handles != null) {
+            if (n > pos.length) {
+                pos = Arrays.copyOf(pos, n);
+                free = Arrays.copyOf(free, n);
+            }
+            freeNum = 0;
+            nextHandle = n;
+            for (int i = 0; i < n; i++)
+                handles[i] = pos[i] = i;
+        }
+        for (int i = (n - 2) / arity; i >= 0; i--)
+            siftDown(i, this.keys[i], this.values[i], handles == null ? -1 : handles[i]);
+        return this;
+    }
+
+    /**
+     * Replaces the contents of the heap with a batch of items with double keys
+     * @param keys the keys of the items
+     * @param values the items, in the same order as their keys
+     * @param n the number of items to take from the front of the arrays
+     * @return the heap holding just those items
+     * @throws IndexOutOfBoundsException if either array has fewer than n items
+     */
+    public Heap heapify(double[] keys, Object[] values, int n) {
+        Objects.checkFromIndexSize(0, n, keys.length);
+        long[] encoded = new long[n];
+        for (int i = 0; i < n; i++)
+            encoded[i] = encode(keys[i]);
+        return heapify(encoded, values, n);
+    }
+
+    /**
+     * Moves every item of another heap into this one, leaving the other empty.
+     * Another Heap's arrays are appended and the whole array is rebuilt in
+     * O(n + m); other kinds of heap are popped one item at a time
+     * @param other the heap to absorb
+     * @return this heap holding the items of both
+     * @throws IllegalStateException if this heap is indexed, since handles cannot be kept
+     */
+    @Override
+    public Heap meld(MergeableHeap other) {
+        if (handles != null)
+            throw new IllegalStateException("an indexed heap cannot meld");
+        if (other == this)
+            return this;
+        if (other instanceof Heap && ((Heap)other).handles == null) {
+            Heap h = (Heap)other;
+            if (num + h.num > keys.length)
+                enlarge(num + h.num);
+            System.arraycopy(h.keys, 0, keys, num, h.num);
+            System.arraycopy(h.values, 0, values, num, h.num);
+            num += h.num;
+            Arrays.fill(h.values, 0, h.num, null);
+            h.num = 0;
+            for (int i = (num - 2) / arity; i >= 0; i--)
+                siftDown(i, keys[i], values[i], -1);
+        } else {
+            while (!other.isEmpty()) {
+                long key = other.peekKey();
+                push(key, other.pop());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Copies the keys and items into a new heap of the same arity, without
+     * handles even if this heap is indexed
+     * @return the copy
+     */
+    Heap copy() {
+        Heap h = new Heap(arity, num);
+        System.arraycopy(keys, 0, h.keys, 0, num);
+        System.arraycopy(values, 0, h.values, 0, num);
+        h.num = num;
+        return h;
+    }
+
+    /**
+     * The number of items in the heap
+     * @return the number of items in the heap
+     */
+    @Override
+    public int length() {
+        return num;
+    }
+
+    /**
+     * Whether there are any items in the heap or not
+     * @return true if the heap is empty
+     */
+    @Override
+    public boolean isEmpty() {
+        return num == 0;
+    }
+
+    /**
+     * Moves an item up from a free slot until its parent is no bigger, shifting
+     * parents down into the hole instead of swapping
+     * @param i the free slot
+     * @param key the key of the item
+     * @param value the item
+     * @param h the handle of the item, ignored unless indexed
+     */
+    private void siftUp(int i, long key, Object value, int h) {
+        while (i > 0) {
+            int parent = (i - 1) / arity;
+            if (keys[parent] <= key)
+                break;
+            move(i, parent);
+            i = parent;
+        }
+        place(i, key, value, h);
+    }
+
+    /**
+     * Moves an item down from a free slot until no child is smaller, shifting
+     * the smallest child up into the hole instead of swapping
+     * @param i the free slot
+     * @param key the key of the item
+     * @param value the item
+     * @param h the handle of the item, ignored unless indexed
+     */
+    private void siftDown(int i, long key, Object value, int h) {
+        int child;
+        while ((child = arity * i + 1) < num) {
+            int stop = Math.min(child + arity, num), best = child;
+            long min = keys[child];
+            for (int c = child + 1; c < stop; c++) {
+                if (keys[c] < min) {
+                    min = keys[c];
+                    best = c;
+                }
+            }
+            if (key <= min)
+                break;
+            move(i, best);
+            i = best;
+        }
+        place(i, key, value, h);
+    }
+
+    /**
+     * Puts an item into a free slot, moving it up or down as its key requires
+     * @param i the free slot
+     * @param key the key of the item
+     * @param value the item
+     * @param h the handle of the item, ignored unless indexed
+     */
+    private void reposition(int i, long key, Object value, int h) {
+        if (i > 0 && key < keys[(i - 1) / arity])
+            siftUp(i, key, value, h);
+        else
+            siftDown(i, key, value, h);
+    }
+
+    /**
+     * Copies an item into the hole left by another
+     * @param to the free slot
+     * @param from the slot of the item
+     */
+    private void move(int to, int from) {
+        keys[to] = keys[from];
+        values[to] = values[from];
+        if (handles != null)
+            pos[handles[to] = handles[from]] = to;
+    }
+
+    /**
+     * Stores an item in a slot
+     * @param i the slot
+     * @param key the key of the item
+     * @param value the item
+     * @param h the handle of the item, ignored unless indexed
+     */
+    private void place(int i, long key, Object value, int h) {
+        keys[i] = key;
+        values[i] = value;
+        if (handles != null)
+            pos[handles[i] = h] = i;
+    }
+
+    /**
+     * Gives out a handle, reusing a released one if there is one
+     * @return the handle
+     */
+    private int allocate() {
+        if (freeNum > 0)
+            return free[--freeNum];
+        if (nextHandle == pos.length) {
+            pos = Arrays.copyOf(pos, pos.length * 2);
+            free = Arrays.copyOf(free, pos.length);
+        }
+        return nextHandle++;
+    }
+
+    /**
+     * Takes back the handle of an item leaving the heap
+     * @param h the handle
+     */
+    private void release(int h) {
+        pos[h] = -1;
+        free[freeNum++] = h;
+    }
+
+    /**
+     * Finds the slot of an item in an indexed heap
+     * @param handle the handle of the item
+     * @return the slot holding the item
+     */
+    private int slot(int handle) {
+        checkIndexed();
+        if (!contains(handle))
+            throw new IllegalArgumentException("handle is not in the heap");
+        return pos[handle];
+    }
+
+    /**
+     * Rejects operations that need handles on a heap without them
+     */
+    private void checkIndexed() {
+        if (handles == null)
+            throw new IllegalStateException("the heap is not indexed");
+    }
+
+    /**
+     * Grows the arrays to hold at least a number of items, at least doubling them
+     * @param capacity the number of items to make room for
+     */
+    private void enlarge(int capacity) {
+        int length = Math.max(capacity, keys.length * 2);
+        keys = Arrays.copyOf(keys, length);
+        values = Arrays.copyOf(values, length);
+        if (handles != null)
+            handles = Arrays.copyOf(handles, length);
+    }
+
+    /**
+     * Turns a double into a long with the same ordering: negative numbers have
+     * their magnitude bits flipped so they count down towards zero
+     * @param d the double
+     * @return the ordered bits
+     */
+    static long encode(double d) {
+        long bits = Double.doubleToLongBits(d);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * Reverses encode(), which is its own inverse
+     * @param bits the ordered bits
+     * @return the double
+     */
+    static double decode(long bits) {
+        return Double.longBitsToDouble(bits ^ ((bits >> 63) & Long.MAX_VALUE));
+    }
+
 }
@@ -0,0 +1,144 @@
+import java.util.SplittableRandom;
+
+/**
+ * Times the MergeableHeap kinds against each other on three workloads, to back
+ * the trade-offs described in MergeableHeap:
+ *
+ * push/pop pushes n random keys and then pops them all.
+ *
+ * monotone pops the smallest key and pushes one or two keys a little above it,
+ * the way Dijkstra's algorithm uses a heap, so RADIX can take part.
+ *
+ * meld spreads the keys over many small heaps and melds them pairwise into
+ * one; only the melding is timed, not building or draining the heaps.
+ *
+ * Run with: java HeapBenchmark [n] [rounds]. Each workload runs a few rounds to
+ * warm up before the timed rounds, and the best round is reported in
+ * nanoseconds per item. A checksum of the popped keys is printed so the work
+ * cannot be optimised away.
+ */
+public class HeapBenchmark {
+
+    // number of heaps the meld workload builds
+    private static final int PARTS = 1024;
+
+    // sum of popped keys, printed so no work is dead
+    private static long checksum;
+
+    /*
+     * One workload, which times the part of itself that it measures
+     */
+    private interface Workload {
+        long run(MergeableHeap.Kind kind, long[] keys);
+    }
+
+    /**
+     * Runs every workload on every kind of heap and prints the results
+     * @param args the number of items and the number of timed rounds, both optional
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long[] keys = new long[n];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < n; i++)
+            keys[i] = random.nextLong(1L << 40);
+
+        System.out.printf("%-10s %12s %12s %12s%n", "ns/item", "push/pop", "monotone", "meld");
+        for (MergeableHeap.Kind kind : MergeableHeap.Kind.values()) {
+            System.out.printf("%-10s %12.1f %12.1f %12.1f%n", kind,
+                    time(HeapBenchmark::pushPop, kind, keys, rounds),
+                    time(HeapBenchmark::monotone, kind, keys, rounds),
+                    time(HeapBenchmark::meld, kind, keys, rounds));
+        }
+        System.out.println("checksum " + checksum);
+    }
+
+    /**
+     * Times a workload, warming up first
+     * @param workload the workload
+     * @param kind the kind of heap
+     * @param keys the keys to use
+     * @param rounds the number of timed rounds
+     * @return the best time per item in nanoseconds
+     */
+    private static double time(Workload workload, MergeableHeap.Kind kind, long[] keys, int rounds) {
+        for (int i = 0; i < 3; i++)
+            workload.run(kind, keys);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++)
+            best = Math.min(best, workload.run(kind, keys));
+        return (double)best / keys.length;
+    }
+
+    /**
+     * Pushes every key and pops them all
+     * @param kind the kind of heap
+     * @param keys the keys to push
+     * @return the time taken in nanoseconds
+     */
+    private static long pushPop(MergeableHeap.Kind kind, long[] keys) {
+        long begin = System.nanoTime();
+        MergeableHeap heap = MergeableHeap.create(kind);
+        for (long key : keys)
+            heap.push(key, null);
+        drain(heap);
+        return System.nanoTime() - begin;
+    }
+
+    /**
+     * Pops the smallest key and pushes keys a little above it until every key
+     * has been pushed once
+     * @param kind the kind of heap
+     * @param keys the source of the increments
+     * @return the time taken in nanoseconds
+     */
+    private static long monotone(MergeableHeap.Kind kind, long[] keys) {
+        long begin = System.nanoTime();
+        MergeableHeap heap = MergeableHeap.create(kind);
+        heap.push(0, null);
+        int pushed = 1;
+        while (!heap.isEmpty()) {
+            long top = heap.peekKey();
+            heap.pop();
+            checksum += top;
+            for (int i = 0; i < 2 && pushed < keys.length; i++)
+                heap.push(top + (keys[pushed++] & 0xFFFF), null);
+        }
+        return System.nanoTime() - begin;
+    }
+
+    /**
+     * Spreads the keys over many small heaps, melds them into one and drains it
+     * @param kind the kind of heap
+     * @param keys the keys to push
+     * @return the time taken by the melds alone in nanoseconds
+     */
+    private static long meld(MergeableHeap.Kind kind, long[] keys) {
+        MergeableHeap[] parts = new MergeableHeap[PARTS];
+        for (int p = 0; p < PARTS; p++)
+            parts[p] = MergeableHeap.create(kind);
+        for (int i = 0; i < keys.length; i++)
+            parts[i % PARTS].push(keys[i], null);
+        long begin = System.nanoTime();
+        for (int width = 1; width < PARTS; width *= 2) {
+            for (int p = 0; p + width < PARTS; p += 2 * width)
+                parts[p].meld(parts[p + width]);
+        }
+        long elapsed = System.nanoTime() - begin;
+        drain(parts[0]);
+        return elapsed;
+    }
+
+    /**
+     * Pops every item, adding the keys to the checksum
+     * @param heap the heap to empty
+     */
+    private static void drain(MergeableHeap heap) {
+        while (!heap.isEmpty()) {
+            checksum += heap.peekKey();
+            heap.pop();
+        }
+    }
+
+}
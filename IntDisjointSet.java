@@ -0,0 +1,86 @@
+import java.util.NoSuchElementException;
+
+/**
+ * Data structure stores a collection of non-overlapping sets of the ints
+ * 0 to n-1. Uses parent and rank arrays as a backend, so it does not box its
+ * elements the way DisjointSet does.
+ */
+public class IntDisjointSet {
+
+    // the parent of each element, or the element itself if it is a representative
+    private final int[] parent;
+
+    // the upper bound for the height of each representative's set
+    private final byte[] rank;
+
+    // number of disjoint sets
+    private int sets;
+
+    /**
+     * Constructor for the disjoint set. Every element starts in its own set
+     * @param size the number of elements
+     */
+    public IntDisjointSet(int size) {
+        parent = new int[size];
+        rank = new byte[size];
+        for (int i = 0; i < size; i++)
+            parent[i] = i;
+        sets = size;
+    }
+
+    /**
+     * Finds the element that serves as the representative for the set of an
+     * element, halving the path as it goes
+     * @param element an element in a set
+     * @return the representative of the set
+     * @throws NoSuchElementException if the element is out of range
+     */
+    public int find(int element) {
+        if (element < 0 || element >= parent.length)
+            throw new NoSuchElementException("element "+element+" is not in the disjoint set");
+        while (parent[element] != element)
+            element = parent[element] = parent[parent[element]];
+        return element;
+    }
+
+    /**
+     * Finds the union of two sets by merging them, determining the representative of
+     * the following set using set ranks
+     * @param one an element in the first set
+     * @param two an element in the second set
+     * @return true if the sets were different and have been merged
+     */
+    public boolean union(int one, int two) {
+        one = find(one);
+        two = find(two);
+        if (one == two)
+            return false;
+        if (rank[one] < rank[two]) {
+            parent[one] = two;
+        } else if (rank[two] < rank[one]) {
+            parent[two] = one;
+        } else {
+            parent[two] = one;
+            rank[one]++;
+        }
+        --sets;
+        return true;
+    }
+
+    /**
+     * The number of disjoint sets
+     * @return how many sets the elements are split into
+     */
+    public int count() {
+        return sets;
+    }
+
+    /**
+     * The number of elements
+     * @return the size the disjoint set was made with
+     */
+    public int size() {
+        return parent.length;
+    }
+
+}
@@ -0,0 +1,15 @@
+/**
+ * Callback taking an int and a double, used to visit weighted neighbours
+ * without boxing
+ */
+@FunctionalInterface
+public interface IntDoubleConsumer {
+
+    /**
+     * Performs this operation on the given arguments
+     * @param value the int argument, usually a vertex id
+     * @param weight the double argument, usually an edge weight
+     */
+    void accept(int value, double weight);
+
+}
@@ -0,0 +1,150 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Weighted directed graph over dense int vertex ids. Adjacency is kept in
+ * growable primitive arrays per vertex, so edges are not objects and adding
+ * or visiting an edge does not allocate outside of occasional array growth.
+ */
+public class IntGraph {
+
+    // destination vertices of the out-edges of each vertex
+    private int[][] targets;
+
+    // weights of the out-edges of each vertex, parallel to targets
+    private double[][] weights;
+
+    // number of out-edges in use for each vertex
+    private int[] degrees;
+
+    // number of vertices in the graph
+    private int num;
+
+    // number of edges in the graph
+    private int edges;
+
+    /**
+     * Constructor for the graph, makes an empty graph
+     */
+    public IntGraph() {
+        this(16);
+    }
+
+    /**
+     * Constructor for the graph, makes an empty graph with room for a
+     * number of vertices
+     * @param capacity the expected number of vertices
+     */
+    public IntGraph(int capacity) {
+        capacity = Math.max(capacity, 1);
+        targets = new int[capacity][];
+        weights = new double[capacity][];
+        degrees = new int[capacity];
+        num = 0; edges = 0;
+    }
+
+    /**
+     * Adds a new vertex to the graph
+     * @return the id of the new vertex
+     */
+    public int addVertex() {
+        if (num == degrees.length)
+            enlarge(num * 2);
+        targets[num] = new int[4];
+        weights[num] = new double[4];
+        return num++;
+    }
+
+    /**
+     * Adds a weighted edge between two existing vertices
+     * @param origin the id of the origin vertex
+     * @param destination the id of the destination vertex
+     * @param weight the weight of the edge
+     * @return this graph
+     * @throws NoSuchElementException if either vertex does not exist
+     */
+    public IntGraph addEdge(int origin, int destination, double weight) {
+        if (origin < 0 || origin >= num || destination < 0 || destination >= num)
+            throw new NoSuchElementException("either the origin or the destination of this edge does not exist");
+        int d = degrees[origin];
+        if (d == targets[origin].length) {
+            targets[origin] = Arrays.copyOf(targets[origin], d * 2);
+            weights[origin] = Arrays.copyOf(weights[origin], d * 2);
+        }
+        targets[origin][d] = destination;
+        weights[origin][d] = weight;
+        degrees[origin] = d + 1;
+        ++edges;
+        return this;
+    }
+
+    /**
+     * Visits every out-edge of a vertex
+     * @param v the id of the vertex
+     * @param action called with the destination and weight of each edge
+     * @throws NoSuchElementException if the vertex does not exist
+     */
+    public void forEachNeighbor(int v, IntDoubleConsumer action) {
+        if (v < 0 || v >= num)
+            throw new NoSuchElementException("the vertex you are looking for DNE");
+        int[] t = targets[v];
+        double[] w = weights[v];
+        for (int i = 0, d = degrees[v]; i < d; i++)
+            action.accept(t[i], w[i]);
+    }
+
+    /**
+     * How many vertices are adjacent to a vertex
+     * @param v the id of the vertex
+     * @return the out-degree of the vertex
+     */
+    public int degree(int v) {
+        if (v < 0 || v >= num)
+            throw new NoSuchElementException("the vertex you are looking for DNE");
+        return degrees[v];
+    }
+
+    /**
+     * The size of the graph
+     * @return the number of vertices in the graph
+     */
+    public int size() {
+        return num;
+    }
+
+    /**
+     * The number of edges in the graph
+     * @return the number of edges
+     */
+    public int edgeCount() {
+        return edges;
+    }
+
+    /**
+     * Freezes this graph into an immutable compressed sparse row view
+     * @return a CSR snapshot of this graph
+     */
+    public CsrGraph toCsr() {
+        int[] offsets = new int[num + 1];
+        int[] t = new int[edges];
+        double[] w = new double[edges];
+        for (int v = 0; v < num; v++) {
+            int d = degrees[v];
+            System.arraycopy(targets[v], 0, t, offsets[v], d);
+            System.arraycopy(weights[v], 0, w, offsets[v], d);
+            offsets[v + 1] = offsets[v] + d;
+        }
+        return new CsrGraph(offsets, t, w);
+    }
+
+    /**
+     * Grows the per-vertex arrays
+     * @param capacity the new number of vertex slots
+     */
+    private void enlarge(int capacity) {
+        targets = Arrays.copyOf(targets, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+        degrees = Arrays.copyOf(degrees, capacity);
+    }
+
+}
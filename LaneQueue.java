@@ -0,0 +1,161 @@
+/**
+ * Queue split into up to 64 lanes, each a bounded Queue of its own. Lanes are
+ * served either by strict priority, where lane 0 always goes first, or by
+ * weighted round robin, where each lane in turn may hand out as many items as
+ * its weight before the next non-empty lane gets a go. A bitmask of the
+ * non-empty lanes makes choosing the next lane a constant time bit operation
+ * however many lanes are idle.
+ */
+public class LaneQueue {
+
+    // the items of each lane
+    private final Queue[] lanes;
+
+    // the most items each lane may hold
+    private final int capacity;
+
+    // items handed out per turn for each lane, or null for strict priority
+    private final int[] weights;
+
+    // bit i is set if lane i has items
+    private long nonEmpty;
+
+    // the lane whose turn it is, and how many items it may still hand out
+    private int current, credit;
+
+    // number of items in all lanes
+    private int num;
+
+    /**
+     * Constructor for a strict priority queue, makes empty lanes
+     * @param lanes the number of lanes, where lane 0 has the highest priority
+     * @param capacity the most items each lane may hold
+     */
+    public LaneQueue(int lanes, int capacity) {
+        this(lanes, capacity, null);
+    }
+
+    /**
+     * Constructor for a weighted round robin queue, makes empty lanes
+     * @param weights the number of items each lane may hand out per turn
+     * @param capacity the most items each lane may hold
+     */
+    public LaneQueue(int[] weights, int capacity) {
+        this(weights.length, capacity, weights.clone());
+        for (int w : weights) {
+            if (w < 1)
+                throw new IllegalArgumentException("lane weights must be positive");
+        }
+    }
+
+    /**
+     * Constructor for the queue
+     * @param lanes the number of lanes
+     * @param capacity the most items each lane may hold
+     * @param weights the weight of each lane, or null for strict priority
+     */
+    private LaneQueue(int lanes, int capacity, int[] weights) {
+        if (lanes < 1 || lanes > 64)
+            throw new IllegalArgumentException("there must be between 1 and 64 lanes");
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.lanes = new Queue[lanes];
+        for (int i = 0; i < lanes; i++)
+            this.lanes[i] = new Queue();
+        this.capacity = capacity;
+        this.weights = weights;
+        nonEmpty = 0;
+        current = -1; credit = 0;
+        num = 0;
+    }
+
+    /**
+     * Adds an item to the back of a lane
+     * @param lane the lane to add to
+     * @param o the item to add
+     * @return false if the lane is full
+     * @throws IndexOutOfBoundsException if the lane does not exist
+     */
+    public boolean add(int lane, Object o) {
+        Queue q = lanes[lane];
+        if (q.length() == capacity)
+            return false;
+        q.add(o);
+        nonEmpty |= 1L << lane;
+        ++num;
+        return true;
+    }
+
+    /**
+     * Looks at the item the next remove() would return
+     * @return the next item, or null if every lane is empty
+     */
+    public Object peek() {
+        int lane = select();
+        return lane < 0 ? null : lanes[lane].peek();
+    }
+
+    /**
+     * Removes the next item, from the lane that is due to be served
+     * @return the next item, or null if every lane is empty
+     */
+    public Object remove() {
+        int lane = select();
+        if (lane < 0)
+            return null;
+        if (weights != null) {
+            if (lane != current) {
+                current = lane;
+                credit = weights[lane];
+            }
+            --credit;
+        }
+        Queue q = lanes[lane];
+        Object o = q.remove();
+        if (q.length() == 0)
+            nonEmpty &= ~(1L << lane);
+        --num;
+        return o;
+    }
+
+    /**
+     * The number of items in the queue
+     * @return the number of items in all lanes
+     */
+    public int length() {
+        return num;
+    }
+
+    /**
+     * The number of items in one lane
+     * @param lane the lane
+     * @return the number of items in the lane
+     */
+    public int length(int lane) {
+        return lanes[lane].length();
+    }
+
+    /**
+     * The number of lanes
+     * @return the number of lanes
+     */
+    public int lanes() {
+        return lanes.length;
+    }
+
+    /**
+     * Picks the lane to serve next without changing any state
+     * @return the lane, or -1 if every lane is empty
+     */
+    private int select() {
+        if (nonEmpty == 0)
+            return -1;
+        if (weights == null)
+            return Long.numberOfTrailingZeros(nonEmpty);
+        if (current >= 0 && credit > 0 && (nonEmpty & (1L << current)) != 0)
+            return current;
+        long after = current == 63 ? 0 : nonEmpty & (-1L << (current + 1));
+        return Long.numberOfTrailingZeros(after != 0 ? after : nonEmpty);
+    }
+
+}
@@ -0,0 +1,257 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only graph backed by a memory-mapped file. The file holds a header,
+ * the CSR offsets, targets and weights, and a dictionary of vertex names, laid
+ * out so that every section can be read in place. Opening a file only maps it,
+ * so queries can start straight away, and processes that map the same file
+ * share its pages through the operating system's page cache. The graph is a
+ * CsrView, so GraphTraversal, ShortestPaths and MinimumSpanningTree run on the
+ * mapped sections directly; only the reverse graph some searches need is
+ * built on the heap.
+ *
+ * Layout, little endian:
+ *   header     magic, version, vertex count n, edge count m, name bytes, padding (6 ints)
+ *   offsets    n + 1 ints
+ *   targets    m ints, then padding to 8 bytes
+ *   weights    m doubles
+ *   names      n + 1 ints of byte offsets, then the UTF-8 bytes of every name
+ */
+public final class MappedGraph implements CsrView {
+
+    // identifies the file format
+    private static final int MAGIC = 0x43535247, VERSION = 1;
+
+    // size of the header in bytes
+    private static final int HEADER = 24;
+
+    // the mapped sections of the file
+    private final IntBuffer offsets, targets, nameOffsets;
+    private final DoubleBuffer weights;
+    private final ByteBuffer names;
+
+    // number of vertex slots and edges
+    private final int n, m;
+
+    /**
+     * Constructor for the graph, slices a mapped file into its sections
+     * @param buffer the whole file
+     * @throws IllegalArgumentException if the header is invalid or the sections do not fit in the file
+     */
+    private MappedGraph(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IllegalArgumentException("not a graph file, or an unsupported version");
+        n = buffer.getInt(8);
+        m = buffer.getInt(12);
+        int nameBytes = buffer.getInt(16);
+        if (n < 0 || m < 0 || nameBytes < 0)
+            throw new IllegalArgumentException("graph file header has a negative count");
+        long length = align(HEADER + (n + 1L) * 4 + m * 4L) + m * 8L + (n + 1L) * 4 + nameBytes;
+        if (length > buffer.capacity())
+            throw new IllegalArgumentException("graph file is truncated: header needs "+length+" bytes but the file has "+buffer.capacity());
+
+        int pos = HEADER;
+        offsets = slice(buffer, pos, (n + 1) * 4).asIntBuffer();
+        pos += (n + 1) * 4;
+        targets = slice(buffer, pos, m * 4).asIntBuffer();
+        pos = (int)align(pos + m * 4L);
+        weights = slice(buffer, pos, m * 8).asDoubleBuffer();
+        pos += m * 8;
+        nameOffsets = slice(buffer, pos, (n + 1) * 4).asIntBuffer();
+        pos += (n + 1) * 4;
+        names = slice(buffer, pos, nameBytes);
+    }
+
+    /**
+     * Maps a graph file into memory without reading it
+     * @param path the file to open
+     * @return the graph in the file
+     * @throws IOException if the file cannot be mapped
+     * @throws IllegalArgumentException if the file is not a graph file
+     */
+    public static MappedGraph open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("graph files larger than 2GB cannot be mapped in one piece");
+            return new MappedGraph(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes a graph in the mapped format
+     * @param graph the edges of the graph
+     * @param vertexNames the name of each vertex id, or null entries for unnamed vertices
+     * @param path the file to write, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(CsrGraph graph, String[] vertexNames, Path path) throws IOException {
+        int n = graph.vertexCount(), m = graph.edgeCount();
+        byte[][] encoded = new byte[n][];
+        int[] nameOffsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            String name = v < vertexNames.length && vertexNames[v] != null ? vertexNames[v] : "";
+            encoded[v] = name.getBytes(StandardCharsets.UTF_8);
+            nameOffsets[v + 1] = nameOffsets[v] + encoded[v].length;
+        }
+
+        long size = align(HEADER + (n + 1) * 4L + m * 4L) + m * 8L + (n + 1) * 4L + nameOffsets[n];
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("graph files larger than 2GB cannot be mapped in one piece");
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m).putInt(nameOffsets[n]).putInt(0);
+
+            int pos = HEADER;
+            slice(buffer, pos, (n + 1) * 4).asIntBuffer().put(graph.offsets);
+            pos += (n + 1) * 4;
+            slice(buffer, pos, m * 4).asIntBuffer().put(graph.targets);
+            pos = (int)align(pos + m * 4L);
+            slice(buffer, pos, m * 8).asDoubleBuffer().put(graph.weights);
+            pos += m * 8;
+            slice(buffer, pos, (n + 1) * 4).asIntBuffer().put(nameOffsets);
+            pos += (n + 1) * 4;
+            ByteBuffer out = slice(buffer, pos, nameOffsets[n]);
+            for (byte[] name : encoded)
+                out.put(name);
+            buffer.force();
+        }
+    }
+
+    /**
+     * The number of vertex slots in the graph
+     * @return one more than the largest vertex id
+     */
+    @Override
+    public int vertexCount() {
+        return n;
+    }
+
+    /**
+     * The number of edges in the graph
+     * @return the number of edges
+     */
+    @Override
+    public int edgeCount() {
+        return m;
+    }
+
+    /**
+     * How many edges leave a vertex
+     * @param v the vertex id
+     * @return the out-degree of the vertex
+     */
+    @Override
+    public int degree(int v) {
+        return offsets.get(v + 1) - offsets.get(v);
+    }
+
+    /**
+     * The position of the first out-edge of a vertex
+     * @param v the vertex id
+     * @return the index of the first edge of the vertex
+     */
+    @Override
+    public int begin(int v) {
+        return offsets.get(v);
+    }
+
+    /**
+     * The position after the last out-edge of a vertex
+     * @param v the vertex id
+     * @return one past the index of the last edge of the vertex
+     */
+    @Override
+    public int end(int v) {
+        return offsets.get(v + 1);
+    }
+
+    /**
+     * The destination of an edge
+     * @param edge the edge index
+     * @return the destination vertex id
+     */
+    @Override
+    public int target(int edge) {
+        return targets.get(edge);
+    }
+
+    /**
+     * The weight of an edge
+     * @param edge the edge index
+     * @return the weight of the edge
+     */
+    @Override
+    public double weight(int edge) {
+        return weights.get(edge);
+    }
+
+    /**
+     * Visits every out-edge of a vertex
+     * @param v the vertex id
+     * @param action called with the destination and weight of each edge
+     */
+    public void forEachNeighbor(int v, IntDoubleConsumer action) {
+        for (int i = offsets.get(v), e = offsets.get(v + 1); i < e; i++)
+            action.accept(targets.get(i), weights.get(i));
+    }
+
+    /**
+     * The name of a vertex, decoded from the dictionary
+     * @param v the vertex id
+     * @return the name of the vertex, empty if it has none
+     */
+    public String name(int v) {
+        int from = nameOffsets.get(v), to = nameOffsets.get(v + 1);
+        byte[] bytes = new byte[to - from];
+        names.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copies the graph onto the heap. The algorithms do not need this, as they
+     * read the mapped sections in place
+     * @return a CSR copy of this graph
+     */
+    public CsrGraph toCsr() {
+        int[] o = new int[n + 1], t = new int[m];
+        double[] w = new double[m];
+        offsets.get(0, o);
+        targets.get(0, t);
+        weights.get(0, w);
+        return new CsrGraph(o, t, w);
+    }
+
+    /**
+     * Takes an independent view of part of a buffer
+     * @param buffer the whole file
+     * @param pos the first byte of the section
+     * @param length the number of bytes in the section
+     * @return a little endian view of the section
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int pos, int length) {
+        return buffer.slice(pos, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Rounds a position up to a multiple of 8 bytes
+     * @param pos the position
+     * @return the aligned position
+     */
+    private static long align(long pos) {
+        return (pos + 7) & ~7L;
+    }
+
+}
@@ -0,0 +1,234 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Minimum spanning forest over the edge weights of a CSR graph, treating
+ * every edge as undirected. Results are arrays of edge indices into the CSR
+ * view. Ties between equal weights are broken by edge index, so both
+ * algorithms return the same forest.
+ */
+public class MinimumSpanningTree {
+
+    // ranges at most this long are sorted or scanned without splitting
+    private static final int GRAIN = 1 << 13;
+
+    // the graph being spanned
+    private final CsrView graph;
+
+    // the origin vertex of each edge
+    private final int[] sources;
+
+    // the pool that runs parallel steps
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor for the spanning tree engine, runs on the common pool
+     * @param graph the graph to span
+     */
+    public MinimumSpanningTree(CsrView graph) {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for the spanning tree engine
+     * @param graph the graph to span
+     * @param pool the pool that runs parallel steps
+     */
+    public MinimumSpanningTree(CsrView graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.pool = pool;
+        sources = new int[graph.edgeCount()];
+        for (int v = 0; v < graph.vertexCount(); v++)
+            Arrays.fill(sources, graph.begin(v), graph.end(v), v);
+    }
+
+    /**
+     * Kruskal's algorithm. Edges are sorted by weight with a parallel merge
+     * sort, then added in order whenever they join two different trees
+     * @return the edge indices of the minimum spanning forest
+     */
+    public int[] kruskal() {
+        int n = graph.vertexCount(), m = graph.edgeCount();
+        int[] order = new int[m];
+        for (int i = 0; i < m; i++)
+            order[i] = i;
+        pool.invoke(new Sort(order, new int[m], 0, m));
+
+        IntDisjointSet sets = new IntDisjointSet(n);
+        int[] tree = new int[Math.max(n - 1, 0)];
+        int k = 0;
+        for (int i = 0; i < m && k < tree.length; i++) {
+            int e = order[i];
+            if (sets.union(sources[e], graph.target(e)))
+                tree[k++] = e;
+        }
+        return Arrays.copyOf(tree, k);
+    }
+
+    /**
+     * Boruvka's algorithm. Every round, each tree picks its lightest outgoing
+     * edge in parallel, and all picked edges are merged in. The number of trees
+     * at least halves every round
+     * @return the edge indices of the minimum spanning forest
+     */
+    public int[] boruvka() {
+        int n = graph.vertexCount();
+        IntDisjointSet sets = new IntDisjointSet(n);
+        int[] component = new int[n];
+        AtomicIntegerArray best = new AtomicIntegerArray(n);
+        int[] tree = new int[Math.max(n - 1, 0)];
+        int k = 0;
+
+        for (boolean merged = true; merged && k < tree.length; ) {
+            for (int v = 0; v < n; v++) {
+                component[v] = sets.find(v);
+                best.set(v, -1);
+            }
+
+            pool.invoke(new RangeTask(0, n, GRAIN, (lo, hi) -> {
+                for (int v = lo; v < hi; v++) {
+                    int cv = component[v];
+                    for (int e = graph.begin(v), end = graph.end(v); e < end; e++) {
+                        int ct = component[graph.target(e)];
+                        if (cv != ct) {
+                            offer(best, cv, e);
+                            offer(best, ct, e);
+                        }
+                    }
+                }
+            }));
+
+            merged = false;
+            for (int c = 0; c < n; c++) {
+                int e = best.get(c);
+                if (e >= 0 && sets.union(sources[e], graph.target(e))) {
+                    tree[k++] = e;
+                    merged = true;
+                }
+            }
+        }
+        return Arrays.copyOf(tree, k);
+    }
+
+    /**
+     * The total weight of a set of edges
+     * @param edges edge indices, as returned by kruskal() or boruvka()
+     * @return the sum of their weights
+     */
+    public double weight(int[] edges) {
+        double sum = 0;
+        for (int e : edges)
+            sum += graph.weight(e);
+        return sum;
+    }
+
+    /**
+     * Records an edge as the lightest one leaving a tree if it beats the
+     * current choice
+     * @param best the lightest edge found so far for each tree
+     * @param c the representative of the tree
+     * @param e the edge index
+     */
+    private void offer(AtomicIntegerArray best, int c, int e) {
+        while (true) {
+            int current = best.get(c);
+            if (current >= 0 && !lighter(e, current))
+                return;
+            if (best.compareAndSet(c, current, e))
+                return;
+        }
+    }
+
+    /**
+     * Orders edges by weight, then by index
+     * @param a the first edge
+     * @param b the second edge
+     * @return true if a comes before b
+     */
+    private boolean lighter(int a, int b) {
+        double wa = graph.weight(a), wb = graph.weight(b);
+        return wa < wb || (wa == wb && a < b);
+    }
+
+    /*
+     * Parallel merge sort of edge indices by weight. Both halves are sorted
+     * in place and then merged through the buffer
+     */
+    private class Sort extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        // the indices being sorted and the scratch space of the same length
+        private final int[] order, buffer;
+
+        // the range this task sorts
+        private final int lo, hi;
+
+        /**
+         * Constructor for the task
+         * @param order the indices to sort
+         * @param buffer scratch space
+         * @param lo the first position
+         * @param hi one past the last position
+         */
+        private Sort(int[] order, int[] buffer, int lo, int hi) {
+            this.order = order;
+            this.buffer = buffer;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        /**
+         * Sorts small ranges directly, otherwise sorts both halves in parallel
+         * and merges them
+         */
+        @Override
+        protected void compute() {
+            if (hi - lo <= GRAIN) {
+                sequential(order, buffer, lo, hi);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new Sort(order, buffer, lo, mid), new Sort(order, buffer, mid, hi));
+            merge(order, buffer, lo, mid, hi);
+        }
+
+        /**
+         * Bottom-up merge sort of a range, with insertion sort for short runs
+         */
+        private void sequential(int[] a, int[] b, int lo, int hi) {
+            for (int run = lo; run < hi; run += 16) {
+                for (int i = run + 1, end = Math.min(run + 16, hi); i < end; i++) {
+                    int x = a[i], j = i - 1;
+                    for (; j >= run && lighter(x, a[j]); j--)
+                        a[j + 1] = a[j];
+                    a[j + 1] = x;
+                }
+            }
+            for (int width = 16; width < hi - lo; width *= 2) {
+                for (int left = lo; left < hi - width; left += 2 * width)
+                    merge(a, b, left, left + width, Math.min(left + 2 * width, hi));
+            }
+        }
+
+        /**
+         * Merges two sorted neighbouring ranges
+         */
+        private void merge(int[] a, int[] b, int lo, int mid, int hi) {
+            if (!lighter(a[mid], a[mid - 1]))
+                return;
+            System.arraycopy(a, lo, b, lo, hi - lo);
+            int i = lo, j = mid, k = lo;
+            while (i < mid && j < hi)
+                a[k++] = lighter(b[j], b[i]) ? b[j++] : b[i++];
+            while (i < mid)
+                a[k++] = b[i++];
+            while (j < hi)
+                a[k++] = b[j++];
+        }
+
+    }
+
+}
@@ -0,0 +1,121 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Bounded lock-free queue for any number of producer threads and one consumer
+ * thread. Uses the same circular array layout as Queue, with a power of two
+ * capacity so that indices wrap with a mask. Producers claim a slot by
+ * advancing the shared tail with a CAS and then publish the item into it, and
+ * the consumer waits for a claimed slot to be filled before taking it.
+ */
+public class MpscQueue {
+
+    // accessors for counters and slots with explicit memory ordering
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    // counters live in the middle of a 128 byte array, clear of neighbouring fields
+    private static final int VALUE = 7, CACHE = 8;
+
+    // array that holds all the values
+    private final Object[] array;
+
+    // capacity - 1, for wrapping indices
+    private final int mask;
+
+    // producer side: next index to claim, and the last consumer index any producer
+    // read, published with release so that a producer trusting the cached index
+    // also sees the consumer's clearing of the slots before it
+    private final long[] tail = new long[16];
+
+    // consumer side: next index to read
+    private final long[] head = new long[16];
+
+    /**
+     * Constructor for the queue, makes an empty queue
+     * @param capacity the least number of items the queue can hold, rounded up to a power of two
+     */
+    public MpscQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        array = new Object[capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1];
+        mask = array.length - 1;
+    }
+
+    /**
+     * Adds an item to the back of the queue. Any thread may call this
+     * @param o the item to add, not null
+     * @return false if the queue is full
+     */
+    public boolean offer(Object o) {
+        if (o == null)
+            throw new NullPointerException("the queue does not hold null items");
+        long t;
+        do {
+            t = (long)LONGS.getVolatile(tail, VALUE);
+            if (t - (long)LONGS.getAcquire(tail, CACHE) > mask) {
+                long h = (long)LONGS.getAcquire(head, VALUE);
+                LONGS.setRelease(tail, CACHE, h);
+                if (t - h > mask)
+                    return false;
+            }
+        } while (!LONGS.compareAndSet(tail, VALUE, t, t + 1));
+        SLOTS.setRelease(array, (int)t & mask, o);
+        return true;
+    }
+
+    /**
+     * Looks at the front of the queue. Only the consumer thread may call this
+     * @return the front item, or null if the queue is empty
+     */
+    public Object peek() {
+        long h = head[VALUE];
+        return h == (long)LONGS.getAcquire(tail, VALUE) ? null : await((int)h & mask);
+    }
+
+    /**
+     * Removes the front of the queue. Only the consumer thread may call this
+     * @return the front item, or null if the queue is empty
+     */
+    public Object remove() {
+        long h = head[VALUE];
+        if (h == (long)LONGS.getAcquire(tail, VALUE))
+            return null;
+        int i = (int)h & mask;
+        Object o = await(i);
+        SLOTS.setRelease(array, i, null);
+        LONGS.setRelease(head, VALUE, h + 1);
+        return o;
+    }
+
+    /**
+     * The number of items in the queue. Only an estimate while either side is active
+     * @return the number of items in the queue
+     */
+    public int length() {
+        long h = (long)LONGS.getAcquire(head, VALUE);
+        long t = (long)LONGS.getAcquire(tail, VALUE);
+        return (int)Math.max(0, Math.min(t - h, array.length));
+    }
+
+    /**
+     * The maximum number of items in the queue
+     * @return the capacity of the queue
+     */
+    public int capacity() {
+        return array.length;
+    }
+
+    /**
+     * Waits for a producer that has claimed a slot to finish filling it
+     * @param i the slot
+     * @return the item in the slot
+     */
+    private Object await(int i) {
+        Object o;
+        while ((o = SLOTS.getAcquire(array, i)) == null)
+            Thread.onSpinWait();
+        return o;
+    }
+
+}
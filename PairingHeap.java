@@ -0,0 +1,244 @@
+/**
+ * Min-heap kept as a tree of nodes where every child's key is no smaller than
+ * its parent's, and a node's children form a linked list. Pushing and melding
+ * just link two roots, in O(1). Popping pairs up the root's children left to
+ * right and then folds the pairs right to left, which keeps the amortized cost
+ * at O(log n). push() returns the item's node, which decreaseKey() can cut out
+ * and relink at the root.
+ */
+public class PairingHeap implements MergeableHeap {
+
+    // the node with the smallest key, or null if the heap is empty
+    private Node root;
+
+    // number of items in the heap
+    private int num;
+
+    /**
+     * Constructor for the heap, makes an empty heap
+     */
+    public PairingHeap() {
+        root = null;
+        num = 0;
+    }
+
+    /**
+     * Adds an item to the heap
+     * @param key the priority of the item, smaller comes out first
+     * @param value the item
+     * @return the heap with the item added
+     */
+    @Override
+    public PairingHeap push(long key, Object value) {
+        insert(key, value);
+        return this;
+    }
+
+    /**
+     * Adds an item to the heap
+     * @param key the priority of the item, smaller comes out first
+     * @param value the item
+     * @return the node of the item, for decreaseKey()
+     */
+    public Node insert(long key, Object value) {
+        Node node = new Node(key, value);
+        root = root == null ? node : link(root, node);
+        ++num;
+        return node;
+    }
+
+    /**
+     * Looks at the item with the smallest key
+     * @return the item, or null if the heap is empty
+     */
+    @Override
+    public Object peek() {
+        return root == null ? null : root.value;
+    }
+
+    /**
+     * The smallest key in the heap
+     * @return the key of the item peek() would return
+     * @throws IllegalStateException if the heap is empty
+     */
+    @Override
+    public long peekKey() {
+        if (root == null)
+            throw new IllegalStateException("the heap is empty");
+        return root.key;
+    }
+
+    /**
+     * Removes the item with the smallest key
+     * @return the item, or null if the heap is empty
+     */
+    @Override
+    public Object pop() {
+        if (root == null)
+            return null;
+        Node top = root;
+        root = combine(top.child);
+        top.child = null;
+        top.prev = top;
+        --num;
+        return top.value;
+    }
+
+    /**
+     * Lowers the key of an item, moving it towards the top
+     * @param node the node of the item, as returned by insert()
+     * @param key the new key, no bigger than the current one
+     * @return the heap with the key changed
+     * @throws IllegalArgumentException if the item has left the heap or the key is bigger
+     */
+    public PairingHeap decreaseKey(Node node, long key) {
+        if (node.prev == node)
+            throw new IllegalArgumentException("node is not in the heap");
+        if (key > node.key)
+            throw new IllegalArgumentException("new key is bigger than the current key");
+        node.key = key;
+        if (node != root) {
+            if (node.prev.child == node)
+                node.prev.child = node.next;
+            else
+                node.prev.next = node.next;
+            if (node.next != null)
+                node.next.prev = node.prev;
+            node.next = node.prev = null;
+            root = link(root, node);
+        }
+        return this;
+    }
+
+    /**
+     * Moves every item of another heap into this one, leaving the other empty.
+     * Takes O(1) if the other heap is a PairingHeap, whose nodes then belong
+     * to this heap
+     * @param other the heap to absorb
+     * @return this heap holding the items of both
+     */
+    @Override
+    public PairingHeap meld(MergeableHeap other) {
+        if (other == this)
+            return this;
+        if (other instanceof PairingHeap) {
+            PairingHeap p = (PairingHeap)other;
+            if (p.root != null)
+                root = root == null ? p.root : link(root, p.root);
+            num += p.num;
+            p.root = null;
+            p.num = 0;
+        } else {
+            while (!other.isEmpty()) {
+                long key = other.peekKey();
+                push(key, other.pop());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * The number of items in the heap
+     * @return the number of items in the heap
+     */
+    @Override
+    public int length() {
+        return num;
+    }
+
+    /**
+     * Whether there are any items in the heap or not
+     * @return true if the heap is empty
+     */
+    @Override
+    public boolean isEmpty() {
+        return num == 0;
+    }
+
+    /**
+     * Makes the root with the bigger key the leftmost child of the other
+     * @param a a root
+     * @param b another root
+     * @return the root of the combined tree
+     */
+    private static Node link(Node a, Node b) {
+        if (b.key < a.key) {
+            Node t = a; a = b; b = t;
+        }
+        b.next = a.child;
+        if (a.child != null)
+            a.child.prev = b;
+        b.prev = a;
+        a.child = b;
+        return a;
+    }
+
+    /**
+     * Combines a list of sibling trees into one, linking them in pairs left to
+     * right and then folding the pairs together right to left
+     * @param first the leftmost sibling, or null
+     * @return the root of the combined tree, or null if there were no siblings
+     */
+    private static Node combine(Node first) {
+        Node pairs = null;
+        while (first != null) {
+            Node a = first, b = a.next;
+            first = b == null ? null : b.next;
+            a.next = a.prev = null;
+            if (b != null) {
+                b.next = b.prev = null;
+                a = link(a, b);
+            }
+            a.next = pairs;
+            pairs = a;
+        }
+        Node result = null;
+        while (pairs != null) {
+            Node next = pairs.next;
+            pairs.next = null;
+            result = result == null ? pairs : link(result, pairs);
+            pairs = next;
+        }
+        return result;
+    }
+
+    /*
+     * One item of the heap. prev is the parent for a leftmost child, the left
+     * sibling otherwise, null for the root and the node itself once popped
+     */
+    public static final class Node {
+
+        // the priority and the item
+        private long key;
+        private final Object value;
+
+        // leftmost child, right sibling and the node before this one
+        private Node child, next, prev;
+
+        /**
+         * Constructor for the node
+         * @param key the priority of the item
+         * @param value the item
+         */
+        private Node(long key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        /**
+         * @return the priority of the item
+         */
+        public long key() {
+            return key;
+        }
+
+        /**
+         * @return the item
+         */
+        public Object value() {
+            return value;
+        }
+
+    }
+
+}
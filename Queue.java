@@ -1,9 +1,19 @@
-public class Queue {
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+public class Queue implements Iterable<Object> {
     
+    // capacity of a new queue, and the smallest the queue shrinks to by itself
+    private static final int MIN_LENGTH = 64;
+
     // array that holds all the values
     private Object[] array;
 
-    // indices for start and end of queue
+    // index of the front of the queue, and of the slot after the back
     private int start, end;
 
     // number of items in the queue
@@ -12,11 +22,20 @@ public class Queue {
     // maximum length of queue
     private int length;
 
+    // items removed in a row while the queue was at most a quarter full
+    private int idle;
+
+    // number of times items were added or removed, for failing iterators fast
+    private int modCount;
+
+    // counters kept once enableMetrics() is called, null until then
+    private QueueMetrics metrics;
+
     /**
      * Constructor for the queue, makes an empty queue
      */
     public Queue () {
-        array = new Object[length = 64];
+        array = new Object[length = MIN_LENGTH];
         start = 0; end = 0;
         num = 0;
     }
@@ -27,10 +46,55 @@ public class Queue {
      * @return
      */
     public Queue add(Object o) {
-        if (start%length == (end+1)%length && num != 0) 
+        if (num == length)
             enlarge();
-        array[end = ++end%length] = o;
+        array[end] = o;
+        end = (end + 1) % length;
         ++num;
+        ++modCount;
+        if (metrics != null)
+            metrics.added(1, num);
+        return this;
+    }
+
+    /**
+     * Adds an item to the front of the queue, ahead of every other item
+     * @param o the item to add
+     * @return the queue with the item added
+     */
+    public Queue addFirst(Object o) {
+        if (num == length)
+            enlarge();
+        start = (start + length - 1) % length;
+        array[start] = o;
+        ++num;
+        ++modCount;
+        if (metrics != null)
+            metrics.addedFirst(num);
+        return this;
+    }
+
+    /**
+     * Adds a run of items to the back of the queue, copying at most two
+     * contiguous segments of the ring
+     * @param src the array holding the items
+     * @param off the index of the first item in src
+     * @param len the number of items to add
+     * @return the queue with the items added
+     * @throws IndexOutOfBoundsException if the range is not inside src
+     */
+    public Queue addAll(Object[] src, int off, int len) {
+        Objects.checkFromIndexSize(off, len, src.length);
+        while (length - num < len)
+            enlarge();
+        int first = Math.min(len, length - end);
+        System.arraycopy(src, off, array, end, first);
+        System.arraycopy(src, off + first, array, 0, len - first);
+        end = (end + len) % length;
+        num += len;
+        ++modCount;
+        if (metrics != null && len > 0)
+            metrics.added(len, num);
         return this;
     }
 
@@ -54,30 +118,255 @@ public class Queue {
             return null;
         } else {
             Object o = array[start];
-            start = ++start % length;
+            array[start] = null;
+            start = (start + 1) % length;
             --num;
+            ++modCount;
+            if (metrics != null)
+                metrics.removed(1);
+            shrinkIfIdle(1);
             return o;
         }
     }
 
+    /**
+     * Removes the back of the queue, the item added most recently by add()
+     * @return the back item, or null if the queue is empty
+     */
+    public Object removeLast() {
+        if (num == 0)
+            return null;
+        end = (end + length - 1) % length;
+        Object o = array[end];
+        array[end] = null;
+        --num;
+        ++modCount;
+        if (metrics != null)
+            metrics.removedLast();
+        shrinkIfIdle(1);
+        return o;
+    }
+
+    /**
+     * Looks at an item without removing it
+     * @param i the position of the item, where 0 is the front
+     * @return the item at that position
+     * @throws IndexOutOfBoundsException if there is no item at that position
+     */
+    public Object get(int i) {
+        Objects.checkIndex(i, num);
+        return array[(start + i) % length];
+    }
+
+    /**
+     * Replaces an item in place
+     * @param i the position of the item, where 0 is the front
+     * @param o the new item
+     * @return the item that was replaced
+     * @throws IndexOutOfBoundsException if there is no item at that position
+     */
+    public Object set(int i, Object o) {
+        Objects.checkIndex(i, num);
+        int j = (start + i) % length;
+        Object old = array[j];
+        array[j] = o;
+        return old;
+    }
+
+    /**
+     * Removes items from the front of the queue into an array, copying at most
+     * two contiguous segments of the ring
+     * @param dst the array to fill from index 0
+     * @param max the most items to remove
+     * @return the number of items removed
+     */
+    public int drainTo(Object[] dst, int max) {
+        int n = Math.min(num, Math.min(max, dst.length));
+        if (n <= 0)
+            return 0;
+        int first = Math.min(n, length - start);
+        System.arraycopy(array, start, dst, 0, first);
+        System.arraycopy(array, 0, dst, first, n - first);
+        clear(n);
+        ++modCount;
+        if (metrics != null)
+            metrics.removed(n);
+        shrinkIfIdle(n);
+        return n;
+    }
+
+    /**
+     * Removes items from the front of the queue and hands each to an action,
+     * walking the ring as at most two contiguous segments. If the action throws,
+     * the items it has already been given stay removed
+     * @param action called with each removed item in order
+     * @param max the most items to remove
+     * @return the number of items removed
+     */
+    public int drain(Consumer<Object> action, int max) {
+        int n = Math.min(num, max);
+        if (n <= 0)
+            return 0;
+        int i = start, done = 0;
+        try {
+            for (int stop = Math.min(length, start + n); i < stop; i++, done++)
+                action.accept(array[i]);
+            for (i = 0; done < n; i++, done++)
+                action.accept(array[i]);
+        } finally {
+            if (done > 0)
+                ++modCount;
+            clear(done);
+            if (metrics != null && done > 0)
+                metrics.removed(done);
+            shrinkIfIdle(done);
+        }
+        return n;
+    }
+
     /**
      * 
-     * @return 
+     * @return
      */
     public int length() {
         return num;
     }
 
     /**
-     * 
+     * Walks the items from front to back without removing them. The iterator
+     * throws ConcurrentModificationException once the queue has had items
+     * added or removed other than through set()
+     * @return an iterator over the items
+     */
+    @Override
+    public Iterator<Object> iterator() {
+        return new Iterator<Object>() {
+
+            // position of the next item, and the queue state it expects
+            private int i = 0;
+            private final int expected = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return i < num;
+            }
+
+            @Override
+            public Object next() {
+                if (modCount != expected)
+                    throw new ConcurrentModificationException();
+                if (i >= num)
+                    throw new NoSuchElementException();
+                return array[(start + i++) % length];
+            }
+
+        };
+    }
+
+    /**
+     * Hands each item to an action from front to back without removing it,
+     * walking the ring as at most two contiguous segments
+     * @param action called with each item in order
+     * @throws ConcurrentModificationException if the action adds or removes items
+     */
+    @Override
+    public void forEach(Consumer<? super Object> action) {
+        Objects.requireNonNull(action);
+        Object[] a = array;
+        int expected = modCount, n = num, first = Math.min(n, length - start);
+        for (int i = start, stop = start + first; i < stop && modCount == expected; i++)
+            action.accept(a[i]);
+        for (int i = 0, stop = n - first; i < stop && modCount == expected; i++)
+            action.accept(a[i]);
+        if (modCount != expected)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * Starts counting adds, removes and resizes, and timing how long one in
+     * every sampleRate items waits in the queue. Until this is called the
+     * queue keeps no counters at all
+     * @param sampleRate time one in this many items, rounded up to a power of two
+     * @return the queue with metrics enabled
+     */
+    public Queue enableMetrics(int sampleRate) {
+        if (metrics == null)
+            metrics = new QueueMetrics(sampleRate);
+        return this;
+    }
+
+    /**
+     * The counters started by enableMetrics()
+     * @return the metrics of the queue, or null if they are not enabled
+     */
+    public QueueMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Shrinks the capacity to the number of items, releasing the rest of the
+     * array. The queue grows again as usual on the next add
+     * @return the queue with its capacity trimmed
+     */
+    public Queue trimToSize() {
+        if (length > Math.max(num, 1)) {
+            resize(Math.max(num, 1));
+            ++modCount;
+        }
+        return this;
+    }
+
+    /**
+     * Doubles the capacity, moving the items to the front of a new array
      * @return
      */
     private Queue enlarge() {
-        Object[] newArray = new Object[length *= 2];
-        for (int i = start; i < array.length; i++) 
-            newArray[i] = array[i];
-        array = newArray;
+        resize(length * 2);
+        if (metrics != null)
+            metrics.resized();
         return this;
     }
 
+    /**
+     * Moves the items to the front of a new array
+     * @param newLength the capacity of the new array, at least the number of items
+     */
+    private void resize(int newLength) {
+        Object[] newArray = new Object[newLength];
+        int first = Math.min(num, length - start);
+        System.arraycopy(array, start, newArray, 0, first);
+        System.arraycopy(array, 0, newArray, first, num - first);
+        array = newArray;
+        length = newLength;
+        start = 0; end = num % length;
+        idle = 0;
+    }
+
+    /**
+     * Removes items from the front by clearing their slots, so the queue does
+     * not keep them from being collected
+     * @param n the number of items to remove
+     */
+    private void clear(int n) {
+        int first = Math.min(n, length - start);
+        Arrays.fill(array, start, start + first, null);
+        Arrays.fill(array, 0, n - first, null);
+        start = (start + n) % length;
+        num -= n;
+    }
+
+    /**
+     * Halves the capacity once the queue has stayed at most a quarter full for
+     * a quarter of its capacity in removals. Growing at full and shrinking at a
+     * quarter leaves the queue half full after either, so a queue hovering
+     * around one size does not keep resizing
+     * @param removed the number of items just removed
+     */
+    private void shrinkIfIdle(int removed) {
+        if (num > length >> 2)
+            idle = 0;
+        else if (length > MIN_LENGTH && (idle += removed) >= length >> 2)
+            resize(Math.max(length >> 1, MIN_LENGTH));
+    }
+
 }
@@ -0,0 +1,244 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for a Queue: items added and removed, how often the array grew,
+ * the deepest the queue has been, and how long sampled items waited between
+ * being added and removed. Latencies go into a log-bucketed histogram with
+ * eight buckets per power of two, so percentiles are within 12.5%. The queue
+ * owning these metrics updates them from its own thread, and any thread may
+ * take a snapshot.
+ */
+public class QueueMetrics {
+
+    // latencies below this many nanoseconds get a bucket each
+    private static final int LINEAR = 16;
+
+    // buckets per power of two above the linear range, as a power of two
+    private static final int SUB_BITS = 3;
+
+    // number of histogram buckets, enough for any positive long
+    private static final int BUCKETS = LINEAR + ((63 - 4) << SUB_BITS);
+
+    // most samples waiting to be removed at once, further samples are dropped
+    private static final int PENDING = 1024;
+
+    // striped counters readable from any thread
+    private final LongAdder adds, removes, resizes;
+    private final LongAccumulator maxDepth;
+
+    // number of items waiting between add and remove in each bucket
+    private final AtomicLongArray histogram;
+
+    // one in every sampleMask + 1 items is timed
+    private final long sampleMask;
+
+    // sequence numbers of the next item to be added and removed, owner thread only
+    private long addSeq, removeSeq;
+
+    // sequence numbers and add times of timed items still in the queue, as a ring
+    private final long[] pendingSeq, pendingTime;
+    private int pendingStart, pendingNum;
+
+    /**
+     * Constructor for the metrics
+     * @param sampleRate time one in this many items, rounded up to a power of two
+     */
+    QueueMetrics(int sampleRate) {
+        if (sampleRate < 1)
+            throw new IllegalArgumentException("sample rate must be positive");
+        sampleMask = sampleRate <= 1 ? 0 : (Integer.highestOneBit(sampleRate - 1) << 1) - 1;
+        adds = new LongAdder();
+        removes = new LongAdder();
+        resizes = new LongAdder();
+        maxDepth = new LongAccumulator(Math::max, 0);
+        histogram = new AtomicLongArray(BUCKETS);
+        pendingSeq = new long[PENDING];
+        pendingTime = new long[PENDING];
+    }
+
+    /**
+     * Records items added to the back of the queue
+     * @param count the number of items
+     * @param depth the number of items in the queue afterwards
+     */
+    void added(int count, int depth) {
+        adds.add(count);
+        maxDepth.accumulate(depth);
+        long next = (addSeq + sampleMask) & ~sampleMask;
+        if (next < addSeq + count && pendingNum < PENDING) {
+            int i = (pendingStart + pendingNum++) % PENDING;
+            pendingSeq[i] = next;
+            pendingTime[i] = System.nanoTime();
+        }
+        addSeq += count;
+    }
+
+    /**
+     * Records an item added to the front of the queue. It takes the sequence
+     * number before the front, so it is never timed and the timed items keep
+     * their places
+     * @param depth the number of items in the queue afterwards
+     */
+    void addedFirst(int depth) {
+        adds.increment();
+        maxDepth.accumulate(depth);
+        --removeSeq;
+    }
+
+    /**
+     * Records an item removed from the back of the queue, dropping its sample
+     * if it was timed
+     */
+    void removedLast() {
+        removes.increment();
+        --addSeq;
+        if (pendingNum > 0 && pendingSeq[(pendingStart + pendingNum - 1) % PENDING] == addSeq)
+            --pendingNum;
+    }
+
+    /**
+     * Records items removed from the front of the queue
+     * @param count the number of items
+     */
+    void removed(int count) {
+        removes.add(count);
+        removeSeq += count;
+        if (pendingNum > 0 && pendingSeq[pendingStart] < removeSeq) {
+            long now = System.nanoTime();
+            while (pendingNum > 0 && pendingSeq[pendingStart] < removeSeq) {
+                histogram.incrementAndGet(bucket(now - pendingTime[pendingStart]));
+                pendingStart = (pendingStart + 1) % PENDING;
+                --pendingNum;
+            }
+        }
+    }
+
+    /**
+     * Records the array growing
+     */
+    void resized() {
+        resizes.increment();
+    }
+
+    /**
+     * Copies the current values of every counter
+     * @return a snapshot of the metrics
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            counts[i] = histogram.get(i);
+        return new Snapshot(adds.sum(), removes.sum(), resizes.sum(), maxDepth.get(), counts);
+    }
+
+    /**
+     * Finds the histogram bucket of a latency
+     * @param nanos the latency
+     * @return the bucket index
+     */
+    private static int bucket(long nanos) {
+        if (nanos < LINEAR)
+            return (int)Math.max(nanos, 0);
+        int exp = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int)(nanos >>> (exp - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+        return LINEAR + ((exp - 4) << SUB_BITS) + sub;
+    }
+
+    /**
+     * Finds the smallest latency that falls in a bucket
+     * @param bucket the bucket index
+     * @return the lower bound of the bucket in nanoseconds
+     */
+    private static long lowerBound(int bucket) {
+        if (bucket < LINEAR)
+            return bucket;
+        int exp = ((bucket - LINEAR) >>> SUB_BITS) + 4;
+        int sub = (bucket - LINEAR) & ((1 << SUB_BITS) - 1);
+        return (long)((1 << SUB_BITS) + sub) << (exp - SUB_BITS);
+    }
+
+    /*
+     * The values of the metrics at one point in time
+     */
+    public static final class Snapshot {
+
+        // counter values
+        private final long adds, removes, resizes, maxDepth;
+
+        // latency histogram and its total
+        private final long[] counts;
+        private final long samples;
+
+        /**
+         * Constructor for the snapshot
+         */
+        private Snapshot(long adds, long removes, long resizes, long maxDepth, long[] counts) {
+            this.adds = adds;
+            this.removes = removes;
+            this.resizes = resizes;
+            this.maxDepth = maxDepth;
+            this.counts = counts;
+            long sum = 0;
+            for (long c : counts)
+                sum += c;
+            samples = sum;
+        }
+
+        /**
+         * @return the number of items added
+         */
+        public long adds() {
+            return adds;
+        }
+
+        /**
+         * @return the number of items removed
+         */
+        public long removes() {
+            return removes;
+        }
+
+        /**
+         * @return the number of times the array grew
+         */
+        public long resizes() {
+            return resizes;
+        }
+
+        /**
+         * @return the most items the queue has held at once
+         */
+        public long maxDepth() {
+            return maxDepth;
+        }
+
+        /**
+         * @return the number of items whose wait was timed
+         */
+        public long samples() {
+            return samples;
+        }
+
+        /**
+         * The wait below which a share of the timed items fall
+         * @param percentile between 0 and 100
+         * @return the lower bound of the matching histogram bucket in nanoseconds, or 0 if nothing was timed
+         */
+        public long latency(double percentile) {
+            if (samples == 0)
+                return 0;
+            long rank = (long)Math.ceil(samples * Math.min(Math.max(percentile, 0), 100) / 100);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(rank, 1))
+                    return lowerBound(i);
+            }
+            return lowerBound(counts.length - 1);
+        }
+
+    }
+
+}
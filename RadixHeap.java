@@ -0,0 +1,204 @@
+import java.util.Arrays;
+
+/**
+ * Monotone min-heap for long keys, where no key pushed may be smaller than the
+ * last key popped or peeked. Items sit in buckets by the highest bit in which
+ * their key differs from that last key, so bucket 0 holds keys equal to it and
+ * bucket b keys that first differ at bit b-1. Pushing drops an item into its
+ * bucket in O(1). When bucket 0 runs dry, the smallest key of the lowest
+ * non-empty bucket becomes the new last key, and that bucket's items move to
+ * lower buckets. Each item can only move down 64 times, so a pop costs
+ * O(log C) amortized for keys spread over a range of C. Keys and values are kept in
+ * primitive arrays per bucket, with no nodes.
+ */
+public class RadixHeap implements MergeableHeap {
+
+    // number of buckets: keys equal to last, plus one per differing bit
+    private static final int BUCKETS = 65;
+
+    // keys and values in each bucket, and how many each holds
+    private final long[][] keys;
+    private final Object[][] values;
+    private final int[] sizes;
+
+    // the last key popped or peeked, a floor for every key in the heap
+    private long last;
+
+    // number of items in the heap
+    private int num;
+
+    /**
+     * Constructor for the heap, makes an empty heap
+     */
+    public RadixHeap() {
+        keys = new long[BUCKETS][];
+        values = new Object[BUCKETS][];
+        sizes = new int[BUCKETS];
+        last = Long.MIN_VALUE;
+        num = 0;
+    }
+
+    /**
+     * Adds an item to the heap
+     * @param key the priority of the item, no smaller than the last key popped or peeked
+     * @param value the item
+     * @return the heap with the item added
+     * @throws IllegalArgumentException if the key is smaller than the last key popped or peeked
+     */
+    @Override
+    public RadixHeap push(long key, Object value) {
+        if (key < last)
+            throw new IllegalArgumentException("key is smaller than the last key popped or peeked");
+        add(bucket(key), key, value);
+        ++num;
+        return this;
+    }
+
+    /**
+     * Looks at the item with the smallest key
+     * @return the item, or null if the heap is empty
+     */
+    @Override
+    public Object peek() {
+        if (num == 0)
+            return null;
+        refill();
+        return values[0][sizes[0] - 1];
+    }
+
+    /**
+     * The smallest key in the heap
+     * @return the key of the item peek() would return
+     * @throws IllegalStateException if the heap is empty
+     */
+    @Override
+    public long peekKey() {
+        if (num == 0)
+            throw new IllegalStateException("the heap is empty");
+        refill();
+        return last;
+    }
+
+    /**
+     * Removes the item with the smallest key
+     * @return the item, or null if the heap is empty
+     */
+    @Override
+    public Object pop() {
+        if (num == 0)
+            return null;
+        refill();
+        int i = --sizes[0];
+        Object value = values[0][i];
+        values[0][i] = null;
+        --num;
+        return value;
+    }
+
+    /**
+     * Moves every item of another heap into this one, leaving the other empty.
+     * Takes O(m), and every key in the other heap must be no smaller than the
+     * last key popped or peeked from this one
+     * @param other the heap to absorb
+     * @return this heap holding the items of both
+     * @throws IllegalArgumentException if the other heap has a key that is too small
+     */
+    @Override
+    public RadixHeap meld(MergeableHeap other) {
+        if (other == this || other.isEmpty())
+            return this;
+        if (other.peekKey() < last)
+            throw new IllegalArgumentException("other heap has keys smaller than the last key popped or peeked");
+        if (other instanceof RadixHeap) {
+            RadixHeap r = (RadixHeap)other;
+            for (int b = 0; b < BUCKETS; b++) {
+                for (int i = 0; i < r.sizes[b]; i++)
+                    add(bucket(r.keys[b][i]), r.keys[b][i], r.values[b][i]);
+                if (r.sizes[b] > 0)
+                    Arrays.fill(r.values[b], 0, r.sizes[b], null);
+                r.sizes[b] = 0;
+            }
+            num += r.num;
+            r.num = 0;
+        } else {
+            while (!other.isEmpty()) {
+                long key = other.peekKey();
+                push(key, other.pop());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * The number of items in the heap
+     * @return the number of items in the heap
+     */
+    @Override
+    public int length() {
+        return num;
+    }
+
+    /**
+     * Whether there are any items in the heap or not
+     * @return true if the heap is empty
+     */
+    @Override
+    public boolean isEmpty() {
+        return num == 0;
+    }
+
+    /**
+     * Finds the bucket of a key relative to the last key popped
+     * @param key the key, no smaller than last
+     * @return the bucket index
+     */
+    private int bucket(long key) {
+        return 64 - Long.numberOfLeadingZeros(key ^ last);
+    }
+
+    /**
+     * Makes sure bucket 0 has items when the heap is not empty, by raising the
+     * last key to the smallest key of the lowest non-empty bucket and spreading
+     * that bucket over the buckets below it
+     */
+    private void refill() {
+        if (sizes[0] > 0)
+            return;
+        int b = 1;
+        while (sizes[b] == 0)
+            ++b;
+        long[] k = keys[b];
+        Object[] v = values[b];
+        int n = sizes[b];
+        long min = k[0];
+        for (int i = 1; i < n; i++)
+            min = Math.min(min, k[i]);
+        last = min;
+        sizes[b] = 0;
+        for (int i = 0; i < n; i++) {
+            add(bucket(k[i]), k[i], v[i]);
+            v[i] = null;
+        }
+    }
+
+    /**
+     * Appends an item to a bucket, growing the bucket if it is full
+     * @param b the bucket
+     * @param key the key of the item
+     * @param value the item
+     */
+    private void add(int b, long key, Object value) {
+        int n = sizes[b];
+        if (keys[b] == null) {
+            keys[b] = new long[16];
+            values[b] = new Object[16];
+        } else if (n == keys[b].length) {
+            keys[b] = Arrays.copyOf(keys[b], n * 2);
+            values[b] = Arrays.copyOf(values[b], n * 2);
+        }
+        keys[b][n] = key;
+        values[b][n] = value;
+        sizes[b] = n + 1;
+    }
+
+}
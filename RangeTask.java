@@ -0,0 +1,55 @@
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join task that splits a range of ints in half until each piece is no
+ * longer than a grain, then runs a body on every piece. Used by the parallel
+ * graph algorithms to spread a loop over the common pool.
+ */
+final class RangeTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /*
+     * Work done over a range
+     */
+    interface Body {
+        void run(int lo, int hi);
+    }
+
+    // the range this task covers
+    private final int lo, hi;
+
+    // the longest range run without splitting
+    private final int grain;
+
+    // the work to run on each piece
+    private final Body body;
+
+    /**
+     * Constructor for the task
+     * @param lo the first index
+     * @param hi one past the last index
+     * @param grain the longest range run without splitting
+     * @param body the work to run on each piece
+     */
+    RangeTask(int lo, int hi, int grain, Body body) {
+        this.lo = lo;
+        this.hi = hi;
+        this.grain = grain;
+        this.body = body;
+    }
+
+    /**
+     * Runs the body directly or forks both halves
+     */
+    @Override
+    protected void compute() {
+        if (hi - lo <= grain) {
+            body.run(lo, hi);
+        } else {
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new RangeTask(lo, mid, grain, body), new RangeTask(mid, hi, grain, body));
+        }
+    }
+
+}
@@ -0,0 +1,318 @@
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Shortest path queries over the edge weights of a CSR graph. Keeps its
+ * distance arrays and heaps between queries and only resets the entries a
+ * query touched, so an instance should be reused but not shared between
+ * threads. Edge weights must not be negative.
+ */
+public class ShortestPaths {
+
+    // the graph being searched
+    private final CsrView graph;
+
+    // the graph with every edge reversed, built on first bidirectional query
+    private CsrGraph reverse;
+
+    // tentative distances from the source and to the target
+    private final double[] forward, backward;
+
+    // vertices whose forward or backward distance has been set
+    private final int[] touchedForward, touchedBackward;
+    private int numForward, numBackward;
+
+    // frontiers of the forward and backward searches
+    private final IndexedHeap heapForward, heapBackward;
+
+    /**
+     * Constructor for the shortest path engine
+     * @param graph the graph to search
+     */
+    public ShortestPaths(CsrView graph) {
+        this.graph = graph;
+        int n = graph.vertexCount();
+        forward = new double[n];
+        backward = new double[n];
+        Arrays.fill(forward, Double.POSITIVE_INFINITY);
+        Arrays.fill(backward, Double.POSITIVE_INFINITY);
+        touchedForward = new int[n];
+        touchedBackward = new int[n];
+        heapForward = new IndexedHeap(n);
+        heapBackward = new IndexedHeap(n);
+    }
+
+    /**
+     * Single source Dijkstra
+     * @param source the id of the vertex to start from
+     * @return the distance to every vertex, or infinity if unreachable
+     */
+    public double[] dijkstra(int source) {
+        check(source);
+        double[] dist = new double[graph.vertexCount()];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        dist[source] = 0;
+        try {
+            heapForward.offer(source, 0);
+            while (!heapForward.isEmpty())
+                relax(heapForward.pop(), dist);
+        } finally {
+            reset();
+        }
+        return dist;
+    }
+
+    /**
+     * Point to point distance, searching forward from the source and backward
+     * from the target at the same time
+     * @param source the id of the vertex to start from
+     * @param target the id of the vertex to reach
+     * @return the length of the shortest path, or infinity if unreachable
+     */
+    public double distance(int source, int target) {
+        check(source);
+        check(target);
+        if (source == target)
+            return 0;
+        CsrGraph in = reverse();
+        double best = Double.POSITIVE_INFINITY;
+        try {
+            setForward(source, 0);
+            setBackward(target, 0);
+            heapForward.offer(source, 0);
+            heapBackward.offer(target, 0);
+            while (!heapForward.isEmpty() && !heapBackward.isEmpty()) {
+                if (heapForward.peekKey() + heapBackward.peekKey() >= best)
+                    break;
+                if (heapForward.peekKey() <= heapBackward.peekKey())
+                    best = step(graph, heapForward.pop(), forward, backward, heapForward, true, best);
+                else
+                    best = step(in, heapBackward.pop(), backward, forward, heapBackward, false, best);
+            }
+        } finally {
+            reset();
+        }
+        return best;
+    }
+
+    /**
+     * Point to point distance guided by an estimate of the remaining distance.
+     * The estimate must never exceed the true remaining distance, or a longer
+     * path may be returned
+     * @param source the id of the vertex to start from
+     * @param target the id of the vertex to reach
+     * @param heuristic the estimated distance from a vertex to the target
+     * @return the length of the shortest path, or infinity if unreachable
+     */
+    public double aStar(int source, int target, IntToDoubleFunction heuristic) {
+        check(source);
+        check(target);
+        double result = Double.POSITIVE_INFINITY;
+        try {
+            setForward(source, 0);
+            heapForward.offer(source, heuristic.applyAsDouble(source));
+            while (!heapForward.isEmpty()) {
+                int v = heapForward.pop();
+                if (v == target) {
+                    result = forward[v];
+                    break;
+                }
+                for (int i = graph.begin(v), e = graph.end(v); i < e; i++) {
+                    int u = graph.target(i);
+                    double d = forward[v] + weight(graph, i);
+                    if (d < forward[u]) {
+                        setForward(u, d);
+                        heapForward.offer(u, d + heuristic.applyAsDouble(u));
+                    }
+                }
+            }
+        } finally {
+            reset();
+        }
+        return result;
+    }
+
+    /**
+     * Relaxes the out-edges of a settled vertex
+     * @param v the settled vertex
+     * @param dist the tentative distances
+     */
+    private void relax(int v, double[] dist) {
+        for (int i = graph.begin(v), e = graph.end(v); i < e; i++) {
+            int u = graph.target(i);
+            double d = dist[v] + weight(graph, i);
+            if (d < dist[u]) {
+                dist[u] = d;
+                heapForward.offer(u, d);
+            }
+        }
+    }
+
+    /**
+     * Settles one vertex of a bidirectional search and updates the best
+     * meeting point
+     * @return the length of the best path found so far
+     */
+    private double step(CsrView g, int v, double[] dist, double[] opposite, IndexedHeap heap, boolean isForward, double best) {
+        for (int i = g.begin(v), e = g.end(v); i < e; i++) {
+            int u = g.target(i);
+            double d = dist[v] + weight(g, i);
+            if (d < dist[u]) {
+                if (isForward)
+                    setForward(u, d);
+                else
+                    setBackward(u, d);
+                heap.offer(u, d);
+            }
+            if (dist[u] + opposite[u] < best)
+                best = dist[u] + opposite[u];
+        }
+        return best;
+    }
+
+    /**
+     * Reads an edge weight, rejecting negative ones
+     * @param g the graph
+     * @param edge the edge index
+     * @return the weight of the edge
+     */
+    private static double weight(CsrView g, int edge) {
+        double w = g.weight(edge);
+        if (w < 0)
+            throw new IllegalArgumentException("edge "+edge+" has a negative weight");
+        return w;
+    }
+
+    /**
+     * Records a forward distance so it can be reset after the query
+     */
+    private void setForward(int v, double d) {
+        if (forward[v] == Double.POSITIVE_INFINITY)
+            touchedForward[numForward++] = v;
+        forward[v] = d;
+    }
+
+    /**
+     * Records a backward distance so it can be reset after the query
+     */
+    private void setBackward(int v, double d) {
+        if (backward[v] == Double.POSITIVE_INFINITY)
+            touchedBackward[numBackward++] = v;
+        backward[v] = d;
+    }
+
+    /**
+     * Clears every entry the last query touched
+     */
+    private void reset() {
+        for (int i = 0; i < numForward; i++)
+            forward[touchedForward[i]] = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < numBackward; i++)
+            backward[touchedBackward[i]] = Double.POSITIVE_INFINITY;
+        numForward = 0; numBackward = 0;
+        heapForward.clear();
+        heapBackward.clear();
+    }
+
+    /**
+     * Builds the reversed graph the first time a bidirectional query needs it
+     * @return the graph with every edge reversed
+     */
+    private CsrGraph reverse() {
+        if (reverse == null)
+            reverse = graph.transpose();
+        return reverse;
+    }
+
+    /**
+     * Makes sure a vertex id is in the graph
+     * @param v the vertex id
+     */
+    private void check(int v) {
+        if (v < 0 || v >= graph.vertexCount())
+            throw new IndexOutOfBoundsException("vertex "+v+" is not in the graph");
+    }
+
+    /*
+     * Frontier of vertex ids keyed by distance, kept in an indexed 4-ary Heap.
+     * The handle of each vertex in the heap is tracked, so an improved
+     * distance lowers its key in place instead of adding a duplicate entry.
+     * Vertices map to handles and back through int arrays, so the heap holds
+     * no boxed ids.
+     */
+    private static final class IndexedHeap {
+
+        // the vertices, with null values and the handle standing for the vertex
+        private final Heap heap;
+
+        // handle of each vertex in the heap, or -1 if absent
+        private final int[] handles;
+
+        // vertex of each handle in use
+        private final int[] vertices;
+
+        /**
+         * Constructor for the heap
+         * @param capacity the number of vertex ids
+         */
+        private IndexedHeap(int capacity) {
+            heap = new Heap(4, capacity, true);
+            handles = new int[capacity];
+            vertices = new int[capacity];
+            Arrays.fill(handles, -1);
+        }
+
+        /**
+         * Inserts a vertex, or lowers its key if it is already in the heap
+         * @param v the vertex
+         * @param key the new key
+         */
+        private void offer(int v, double key) {
+            int h = handles[v];
+            if (h < 0) {
+                h = heap.insert(key, null);
+                handles[v] = h;
+                vertices[h] = v;
+            } else if (Heap.encode(key) < heap.key(h)) {
+                heap.decreaseKey(h, key);
+            }
+        }
+
+        /**
+         * Removes the vertex with the smallest key
+         * @return the vertex
+         */
+        private int pop() {
+            int v = vertices[heap.peekHandle()];
+            heap.pop();
+            handles[v] = -1;
+            return v;
+        }
+
+        /**
+         * The smallest key in the heap
+         * @return the key of the top vertex
+         */
+        private double peekKey() {
+            return heap.peekDoubleKey();
+        }
+
+        /**
+         * Whether the heap has no vertices or not
+         * @return true if the heap is empty
+         */
+        private boolean isEmpty() {
+            return heap.isEmpty();
+        }
+
+        /**
+         * Removes every vertex
+         */
+        private void clear() {
+            while (!heap.isEmpty())
+                pop();
+        }
+
+    }
+
+}
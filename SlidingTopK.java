@@ -0,0 +1,81 @@
+/**
+ * Keeps the k items with the biggest keys over a sliding window of a stream.
+ * The window is split into panes, each with a TopK of its own. Items go into
+ * the newest pane, advance() drops the oldest pane and starts a fresh one, and
+ * result() merges the panes. The answer is exact for a window made of whole
+ * panes, and memory stays at O(panes * k) however many items pass through.
+ */
+public class SlidingTopK {
+
+    // the number of items to keep
+    private final int k;
+
+    // the selector of each pane, as a ring with the newest at current
+    private final TopK[] panes;
+    private int current;
+
+    /**
+     * Constructor for the window, holding no items
+     * @param k the number of items to keep
+     * @param panes the number of panes in the window
+     */
+    public SlidingTopK(int k, int panes) {
+        if (panes < 1)
+            throw new IllegalArgumentException("there must be at least one pane");
+        this.k = k;
+        this.panes = new TopK[panes];
+        for (int i = 0; i < panes; i++)
+            this.panes[i] = new TopK(k);
+        current = 0;
+    }
+
+    /**
+     * Considers an item for the newest pane
+     * @param key the score of the item, bigger is better
+     * @param value the item
+     * @return true if the item is now among the top k of its pane
+     */
+    public boolean offer(long key, Object value) {
+        return panes[current].offer(key, value);
+    }
+
+    /**
+     * Considers an item for the newest pane
+     * @param key the score of the item, bigger is better
+     * @param value the item
+     * @return true if the item is now among the top k of its pane
+     */
+    public boolean offer(double key, Object value) {
+        return panes[current].offer(key, value);
+    }
+
+    /**
+     * Slides the window by one pane, forgetting the items of the oldest
+     * @return the window with a fresh pane
+     */
+    public SlidingTopK advance() {
+        current = (current + 1) % panes.length;
+        panes[current] = new TopK(k);
+        return this;
+    }
+
+    /**
+     * The top k items over every pane in the window
+     * @return a new selector holding them
+     */
+    public TopK result() {
+        TopK result = new TopK(k);
+        for (TopK pane : panes)
+            result.merge(pane);
+        return result;
+    }
+
+    /**
+     * The number of panes in the window
+     * @return the number of panes
+     */
+    public int panes() {
+        return panes.length;
+    }
+
+}
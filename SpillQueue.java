@@ -0,0 +1,300 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Queue of byte payloads whose heap usage stays flat however long the backlog
+ * grows. The newest payloads are kept in a bounded Queue on the heap; when it
+ * fills up, its oldest half is spilled to memory-mapped segment files in a
+ * directory. Payloads are always removed in the order they were added: from
+ * the segments first, as read-only views of the mapped file with no copying,
+ * then from the heap.
+ *
+ * Each segment records how far it has been read, so a queue opened on the same
+ * directory after a restart replays every spilled payload that was not removed.
+ * close() spills the heap payloads too, so a clean shutdown loses nothing.
+ */
+public class SpillQueue implements Closeable {
+
+    // segment header: the position of the next unread record
+    private static final int HEADER = 8;
+
+    // prefix and suffix of segment file names
+    private static final String PREFIX = "segment-", SUFFIX = ".dat";
+
+    // the directory holding the segment files
+    private final Path directory;
+
+    // the default size of a segment file in bytes
+    private final int segmentSize;
+
+    // the most payloads kept on the heap
+    private final int hotCapacity;
+
+    // the newest payloads, as byte arrays
+    private final Queue hot;
+
+    // spilled segments in the order they will be read, and the one being written
+    private final Queue segments;
+    private Segment writing;
+
+    // number of spilled payloads not yet removed
+    private long spilled;
+
+    // identifier of the next segment file
+    private long nextId;
+
+    /**
+     * Constructor for the queue. Opens the segments already in the directory,
+     * so their unread payloads come out first
+     * @param directory the directory for segment files, created if missing
+     * @param segmentSize the size of each segment file in bytes
+     * @param hotCapacity the most payloads kept on the heap
+     * @throws IOException if the directory or its segments cannot be opened
+     */
+    public SpillQueue(Path directory, int segmentSize, int hotCapacity) throws IOException {
+        if (segmentSize <= HEADER + 4 || hotCapacity < 1)
+            throw new IllegalArgumentException("segment size or heap capacity too small");
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.hotCapacity = hotCapacity;
+        hot = new Queue();
+        segments = new Queue();
+        recover();
+    }
+
+    /**
+     * Adds a payload to the back of the queue
+     * @param payload the bytes to add, copied if they stay on the heap
+     * @return the queue with the payload added
+     */
+    public SpillQueue add(byte[] payload) {
+        if (hot.length() == hotCapacity)
+            spill(Math.max(1, hotCapacity / 2));
+        hot.add(payload.clone());
+        return this;
+    }
+
+    /**
+     * Adds the remaining bytes of a buffer to the back of the queue
+     * @param payload the bytes to add; its position is not changed
+     * @return the queue with the payload added
+     */
+    public SpillQueue add(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        if (hot.length() == hotCapacity)
+            spill(Math.max(1, hotCapacity / 2));
+        hot.add(bytes);
+        return this;
+    }
+
+    /**
+     * Removes the front of the queue. A spilled payload comes back as a view of
+     * its segment file, which stays valid after the segment is deleted
+     * @return the front payload as a read-only buffer, or null if the queue is empty
+     */
+    public ByteBuffer remove() {
+        while (spilled > 0) {
+            Segment head = (Segment)segments.peek();
+            if (head.hasNext()) {
+                --spilled;
+                return head.next();
+            }
+            segments.remove();
+            if (head == writing)
+                writing = null;
+            head.delete();
+        }
+        byte[] bytes = (byte[])hot.remove();
+        return bytes == null ? null : ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * The number of payloads in the queue
+     * @return the number of payloads on the heap and on disk
+     */
+    public long length() {
+        return hot.length() + spilled;
+    }
+
+    /**
+     * Spills every payload still on the heap and flushes all segments to disk.
+     * The queue must not be used afterwards
+     * @throws IOException if a segment cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            spill(hot.length());
+            Object o;
+            while ((o = segments.remove()) != null)
+                ((Segment)o).force();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Moves the oldest payloads from the heap to the back of the segments
+     * @param count the number of payloads to move
+     */
+    private void spill(int count) {
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = (byte[])hot.remove();
+            if (writing == null || !writing.append(bytes)) {
+                writing = create(Math.max(segmentSize, HEADER + 4 + bytes.length));
+                segments.add(writing);
+                writing.append(bytes);
+            }
+            ++spilled;
+        }
+    }
+
+    /**
+     * Opens the segment files left in the directory, oldest first
+     * @throws IOException if a segment cannot be opened
+     */
+    private void recover() throws IOException {
+        ArrayList<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : files)
+                paths.add(path);
+        }
+        Collections.sort(paths);
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            nextId = Math.max(nextId, Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())) + 1);
+            Segment segment = new Segment(path, (int)Files.size(path));
+            int unread = segment.unread();
+            if (unread == 0) {
+                segment.delete();
+            } else {
+                spilled += unread;
+                segments.add(segment);
+                writing = segment;
+            }
+        }
+    }
+
+    /**
+     * Creates a new segment file
+     * @param size the size of the file in bytes
+     * @return the empty segment
+     */
+    private Segment create(int size) {
+        try {
+            return new Segment(directory.resolve(String.format("%s%016d%s", PREFIX, nextId++, SUFFIX)), size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * One memory-mapped segment file. After the header come records of an int
+     * holding the payload length plus one, then the payload. A zero length
+     * marks the end of the written records, since new files are zero filled.
+     */
+    private static final class Segment {
+
+        // the file and its mapping
+        private final Path path;
+        private final MappedByteBuffer buffer;
+
+        // positions of the next record to read and to write
+        private int readPos, writePos;
+
+        /**
+         * Constructor for the segment, maps a new or existing file and finds
+         * where reading and writing left off
+         * @param path the segment file
+         * @param size the size of the file in bytes
+         * @throws IOException if the file cannot be mapped
+         */
+        private Segment(Path path, int size) throws IOException {
+            this.path = path;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+            readPos = Math.max(HEADER, buffer.getInt(0));
+            writePos = readPos;
+            while (writePos + 4 <= buffer.capacity() && buffer.getInt(writePos) != 0)
+                writePos += 3 + buffer.getInt(writePos);
+        }
+
+        /**
+         * Appends a payload if it fits
+         * @param bytes the payload
+         * @return false if the segment is too full
+         */
+        private boolean append(byte[] bytes) {
+            if (writePos + 4 + bytes.length > buffer.capacity())
+                return false;
+            buffer.put(writePos + 4, bytes);
+            buffer.putInt(writePos, bytes.length + 1);
+            writePos += 4 + bytes.length;
+            return true;
+        }
+
+        /**
+         * Whether there are unread records or not
+         * @return true if a record can be read
+         */
+        private boolean hasNext() {
+            return readPos < writePos;
+        }
+
+        /**
+         * Reads the next record and records the progress in the header
+         * @return a read-only view of the payload
+         */
+        private ByteBuffer next() {
+            int length = buffer.getInt(readPos) - 1;
+            ByteBuffer payload = buffer.slice(readPos + 4, length).asReadOnlyBuffer();
+            readPos += 4 + length;
+            buffer.putInt(0, readPos);
+            return payload;
+        }
+
+        /**
+         * Counts the records not read yet
+         * @return the number of unread records
+         */
+        private int unread() {
+            int count = 0;
+            for (int pos = readPos; pos < writePos; pos += 3 + buffer.getInt(pos))
+                ++count;
+            return count;
+        }
+
+        /**
+         * Writes the mapped pages back to the file
+         */
+        private void force() {
+            buffer.force();
+        }
+
+        /**
+         * Deletes the segment file once every record has been read
+         */
+        private void delete() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,114 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Bounded lock-free queue for exactly one producer thread and one consumer
+ * thread. Uses the same circular array layout as Queue, with a power of two
+ * capacity so that indices wrap with a mask. Each side owns its counter and
+ * a cached copy of the other side's counter, kept on separate cache lines,
+ * and the counters are published with release/acquire ordering only.
+ */
+public class SpscQueue {
+
+    // accessor for the head and tail counters, published with release/acquire;
+    // the slots themselves are ordered by those counters and need no handle
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // each side's counter and its copy of the other side's counter sit together
+    // mid-way through that side's own 16 long array, so the producer's and the
+    // consumer's fields never share a cache line
+    private static final int VALUE = 7, CACHE = 8;
+
+    // array that holds all the values
+    private final Object[] array;
+
+    // capacity - 1, for wrapping indices
+    private final int mask;
+
+    // producer side: next index to write, and the last consumer index it read
+    private final long[] tail = new long[16];
+
+    // consumer side: next index to read, and the last producer index it read
+    private final long[] head = new long[16];
+
+    /**
+     * Constructor for the queue, makes an empty queue
+     * @param capacity the least number of items the queue can hold, rounded up to a power of two
+     */
+    public SpscQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        array = new Object[capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1];
+        mask = array.length - 1;
+    }
+
+    /**
+     * Adds an item to the back of the queue. Only the producer thread may call this
+     * @param o the item to add, not null
+     * @return false if the queue is full
+     */
+    public boolean offer(Object o) {
+        if (o == null)
+            throw new NullPointerException("the queue does not hold null items");
+        long t = tail[VALUE];
+        if (t - tail[CACHE] > mask) {
+            tail[CACHE] = (long)LONGS.getAcquire(head, VALUE);
+            if (t - tail[CACHE] > mask)
+                return false;
+        }
+        array[(int)t & mask] = o;
+        LONGS.setRelease(tail, VALUE, t + 1);
+        return true;
+    }
+
+    /**
+     * Looks at the front of the queue. Only the consumer thread may call this
+     * @return the front item, or null if the queue is empty
+     */
+    public Object peek() {
+        long h = head[VALUE];
+        if (h >= head[CACHE]) {
+            head[CACHE] = (long)LONGS.getAcquire(tail, VALUE);
+            if (h >= head[CACHE])
+                return null;
+        }
+        return array[(int)h & mask];
+    }
+
+    /**
+     * Removes the front of the queue. Only the consumer thread may call this
+     * @return the front item, or null if the queue is empty
+     */
+    public Object remove() {
+        long h = head[VALUE];
+        if (h >= head[CACHE]) {
+            head[CACHE] = (long)LONGS.getAcquire(tail, VALUE);
+            if (h >= head[CACHE])
+                return null;
+        }
+        int i = (int)h & mask;
+        Object o = array[i];
+        array[i] = null;
+        LONGS.setRelease(head, VALUE, h + 1);
+        return o;
+    }
+
+    /**
+     * The number of items in the queue. Only an estimate while either side is active
+     * @return the number of items in the queue
+     */
+    public int length() {
+        long h = (long)LONGS.getAcquire(head, VALUE);
+        long t = (long)LONGS.getAcquire(tail, VALUE);
+        return (int)Math.max(0, Math.min(t - h, array.length));
+    }
+
+    /**
+     * The maximum number of items in the queue
+     * @return the capacity of the queue
+     */
+    public int capacity() {
+        return array.length;
+    }
+
+}
@@ -0,0 +1,150 @@
+/**
+ * Keeps the k items with the biggest keys seen in a stream, in O(k) memory. The
+ * items are held in a min-heap, so the weakest of them sits on top, and its
+ * key is cached as a threshold. Once k items are held, an item whose key is no
+ * bigger than the threshold is turned away with a single comparison, which is
+ * what almost every item of a long stream gets. A better item replaces the top
+ * with Heap.pushPop(), a single sift down.
+ *
+ * For parallel streams, give each thread its own TopK and merge them at the
+ * end. Keys of Long.MIN_VALUE are never kept.
+ */
+public class TopK {
+
+    // the number of items to keep
+    private final int k;
+
+    // the best items so far, the weakest on top
+    private final Heap heap;
+
+    // keys at or below this are turned away: the smallest key held once there are k items
+    private long threshold;
+
+    /**
+     * Constructor for the selector, holding no items
+     * @param k the number of items to keep
+     */
+    public TopK(int k) {
+        if (k < 1)
+            throw new IllegalArgumentException("k must be positive");
+        this.k = k;
+        heap = new Heap(4, k);
+        threshold = Long.MIN_VALUE;
+    }
+
+    /**
+     * Considers a key with no item attached
+     * @param key the score
+     * @return true if the key is now among the top k
+     */
+    public boolean offer(long key) {
+        return offer(key, null);
+    }
+
+    /**
+     * Considers an item for the top k
+     * @param key the score of the item, bigger is better
+     * @param value the item
+     * @return true if the item is now among the top k
+     */
+    public boolean offer(long key, Object value) {
+        if (key <= threshold)
+            return false;
+        if (heap.length() < k) {
+            heap.push(key, value);
+            if (heap.length() == k)
+                threshold = heap.peekKey();
+        } else {
+            heap.pushPop(key, value);
+            threshold = heap.peekKey();
+        }
+        return true;
+    }
+
+    /**
+     * Considers an item for the top k
+     * @param key the score of the item, bigger is better
+     * @param value the item
+     * @return true if the item is now among the top k
+     */
+    public boolean offer(double key, Object value) {
+        return offer(Heap.encode(key), value);
+    }
+
+    /**
+     * Adds the items held by another selector, as if they had been offered here
+     * @param other the selector to merge, left unchanged
+     * @return this selector holding the top k of both
+     */
+    public TopK merge(TopK other) {
+        Heap h = other.heap.copy();
+        while (!h.isEmpty()) {
+            long key = h.peekKey();
+            offer(key, h.pop());
+        }
+        return this;
+    }
+
+    /**
+     * The key an item must beat to get in
+     * @return the smallest key held once there are k items, Long.MIN_VALUE before that
+     */
+    public long threshold() {
+        return threshold;
+    }
+
+    /**
+     * The keys held, best first
+     * @return the keys in descending order
+     */
+    public long[] keys() {
+        Heap h = heap.copy();
+        long[] keys = new long[h.length()];
+        for (int i = keys.length - 1; i >= 0; i--) {
+            keys[i] = h.peekKey();
+            h.pop();
+        }
+        return keys;
+    }
+
+    /**
+     * The keys held, best first, for items offered with double keys
+     * @return the keys in descending order
+     */
+    public double[] doubleKeys() {
+        long[] keys = keys();
+        double[] result = new double[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            result[i] = Heap.decode(keys[i]);
+        return result;
+    }
+
+    /**
+     * The items held, best first
+     * @return the items in the same order as keys()
+     */
+    public Object[] values() {
+        Heap h = heap.copy();
+        Object[] values = new Object[h.length()];
+        for (int i = values.length - 1; i >= 0; i--)
+            values[i] = h.pop();
+        return values;
+    }
+
+    /**
+     * The number of items held
+     * @return the number of items held, at most k
+     */
+    public int length() {
+        return heap.length();
+    }
+
+    /**
+     * The number of items to keep
+     * @return k
+     */
+    public int capacity() {
+        return k;
+    }
+
+}
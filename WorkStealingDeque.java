@@ -0,0 +1,145 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Chase-Lev work-stealing deque on a circular array. The thread that owns the
+ * deque pushes and pops at the bottom with plain stores and a fence, and only
+ * needs a CAS when it races a thief for the last item. Any other thread may
+ * steal from the top with a single CAS. The array doubles the way
+ * Queue.enlarge() does when it fills up, and thieves still reading the old
+ * array see the same items there.
+ */
+public class WorkStealingDeque {
+
+    // accessors for counters and slots with explicit memory ordering
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    // counters live in the middle of a 128 byte array, clear of neighbouring fields
+    private static final int VALUE = 7;
+
+    // array that holds all the values, replaced when it grows
+    private volatile Object[] array;
+
+    // index of the next item to steal, advanced by thieves and by the owner taking the last item
+    private final long[] top = new long[16];
+
+    // index after the last item, only written by the owner
+    private final long[] bottom = new long[16];
+
+    /**
+     * Constructor for the deque, makes an empty deque
+     */
+    public WorkStealingDeque() {
+        this(64);
+    }
+
+    /**
+     * Constructor for the deque, makes an empty deque
+     * @param capacity the initial capacity, rounded up to a power of two
+     */
+    public WorkStealingDeque(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        array = new Object[capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1];
+    }
+
+    /**
+     * Adds an item to the bottom of the deque. Only the owner thread may call this
+     * @param o the item to add, not null
+     * @return the deque with the item added
+     */
+    public WorkStealingDeque push(Object o) {
+        if (o == null)
+            throw new NullPointerException("the deque does not hold null items");
+        long b = bottom[VALUE];
+        long t = (long)LONGS.getAcquire(top, VALUE);
+        Object[] a = array;
+        if (b - t >= a.length)
+            a = enlarge(a, t, b);
+        SLOTS.setRelease(a, (int)b & (a.length - 1), o);
+        LONGS.setRelease(bottom, VALUE, b + 1);
+        return this;
+    }
+
+    /**
+     * Removes the item at the bottom of the deque, the one pushed most recently.
+     * Only the owner thread may call this
+     * @return the bottom item, or null if the deque is empty
+     */
+    public Object pop() {
+        long b = bottom[VALUE] - 1;
+        Object[] a = array;
+        LONGS.setVolatile(bottom, VALUE, b);
+        VarHandle.fullFence();
+        long t = (long)LONGS.getVolatile(top, VALUE);
+        if (t > b) {
+            LONGS.setRelease(bottom, VALUE, b + 1);
+            return null;
+        }
+        int i = (int)b & (a.length - 1);
+        Object o = SLOTS.getAcquire(a, i);
+        if (t == b) {
+            if (!LONGS.compareAndSet(top, VALUE, t, t + 1))
+                o = null;
+            LONGS.setRelease(bottom, VALUE, b + 1);
+        }
+        if (o != null)
+            SLOTS.setRelease(a, i, null);
+        return o;
+    }
+
+    /**
+     * Removes the item at the top of the deque, the oldest one. Any thread may
+     * call this
+     * @return the top item, or null if the deque is empty or another thread took it first
+     */
+    public Object steal() {
+        long t = (long)LONGS.getAcquire(top, VALUE);
+        VarHandle.fullFence();
+        long b = (long)LONGS.getAcquire(bottom, VALUE);
+        if (t >= b)
+            return null;
+        Object[] a = array;
+        Object o = SLOTS.getAcquire(a, (int)t & (a.length - 1));
+        if (!LONGS.compareAndSet(top, VALUE, t, t + 1))
+            return null;
+        return o;
+    }
+
+    /**
+     * The number of items in the deque. Only an estimate while other threads are active
+     * @return the number of items in the deque
+     */
+    public int length() {
+        long t = (long)LONGS.getAcquire(top, VALUE);
+        long b = (long)LONGS.getAcquire(bottom, VALUE);
+        return (int)Math.max(0, b - t);
+    }
+
+    /**
+     * Whether there are any items in the deque or not. Only an estimate while
+     * other threads are active
+     * @return true if the deque looks empty
+     */
+    public boolean isEmpty() {
+        return length() == 0;
+    }
+
+    /**
+     * Doubles the capacity, copying the items to the same positions modulo the
+     * new length. The old array is left untouched for thieves still reading it
+     * @param old the current array
+     * @param t the top index
+     * @param b the bottom index
+     * @return the new array
+     */
+    private Object[] enlarge(Object[] old, long t, long b) {
+        Object[] a = new Object[old.length * 2];
+        for (long i = t; i < b; i++)
+            a[(int)i & (a.length - 1)] = old[(int)i & (old.length - 1)];
+        array = a;
+        return a;
+    }
+
+}